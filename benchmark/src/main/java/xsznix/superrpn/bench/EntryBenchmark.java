@@ -0,0 +1,120 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apfloat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.engine.Calculator;
+import xsznix.superrpn.engine.Operator;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Measures number entry: typing the digits of a number one key at a time,
+ * showing it after every key, and parsing the typed string into a float.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryBenchmark {
+	
+	/** The number of digits typed. */
+	@Param({ "10", "36", "100", "10000" })
+	public int digits;
+	
+	private Calculator calc;
+	
+	private Operator[] keys;
+	
+	/** The typed number, as a string. */
+	private String typed;
+	
+	/** The number of characters in a row of the stack view. */
+	private static final int COLUMNS = 40;
+	
+	@Setup
+	public void setUp() {
+		calc = new Calculator();
+		keys = new Operator[digits];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < digits; i++) {
+			char c = (char) ('1' + i % 9);
+			keys[i] = calc.getRegistry().get("digit" + c);
+			sb.append(c);
+		}
+		typed = sb.toString();
+	}
+	
+	/** Types a number with the digit operators, as the keyboard does. */
+	@Benchmark
+	public ComputationStackItem typeDigits() throws OperationException {
+		ComputationStack stack = calc.getStack();
+		stack.push("0");
+		for (Operator key : keys)
+			key.operate(stack, calc);
+		return stack.pop();
+	}
+	
+	/** Appends the digits of a number to an item, one at a time. */
+	@Benchmark
+	public ComputationStackItem append() {
+		ComputationStackItem item = new ComputationStackItem("0");
+		for (int i = 0; i < digits; i++)
+			item = item.append(typed.charAt(i), calc.getPrecision());
+		return item;
+	}
+	
+	/**
+	 * Appends the digits of a number to an item and renders the row after
+	 * each one, as the stack view does.
+	 */
+	@Benchmark
+	public String appendAndShow() {
+		ComputationStackItem item = new ComputationStackItem("0");
+		String row = null;
+		for (int i = 0; i < digits; i++) {
+			item = item.append(typed.charAt(i), calc.getPrecision());
+			row = item.getDisplayStr(calc.getPrecision(), COLUMNS);
+		}
+		return row;
+	}
+	
+	/**
+	 * Appends the digits of a number to an item and turns the whole value
+	 * into a string after each one, as the stack view used to.
+	 */
+	@Benchmark
+	public String appendAndShowFull() {
+		ComputationStackItem item = new ComputationStackItem("0");
+		String row = null;
+		for (int i = 0; i < digits; i++) {
+			item = item.append(typed.charAt(i), calc.getPrecision());
+			row = item.getValStr(calc.getPrecision());
+		}
+		return row;
+	}
+	
+	/** Parses a typed number into a float. */
+	@Benchmark
+	public Apfloat parse() {
+		return new ComputationStackItem(typed).getValue();
+	}
+
+}
@@ -0,0 +1,97 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.util.Constant;
+import xsznix.superrpn.util.Maths;
+import xsznix.superrpn.util.NumberFormatter;
+import xsznix.superrpn.util.NumberFormatter.Notation;
+
+/**
+ * Measures <code>Maths.toPrettyString()</code>, which formats every float
+ * shown in the stack view, for a number written normally and one written in
+ * scientific notation, against the <code>String.format()</code> path it
+ * replaced and in each notation of <code>NumberFormatter</code>.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatBenchmark {
+	
+	/** The displayed precision. */
+	@Param({ "8", "30" })
+	public int precision;
+	
+	/** A number with a small exponent. */
+	private Apfloat small;
+	
+	/** A number with a large exponent. */
+	private Apfloat large;
+	
+	private NumberFormatter formatter;
+	
+	@Setup
+	public void setUp() {
+		small = ApfloatMath.sqrt(new Apfloat(2, Constant.PRECISION));
+		large = small.multiply(ApfloatMath.pow(
+				new Apfloat(10, Constant.PRECISION), 100));
+		formatter = new NumberFormatter();
+	}
+	
+	@Benchmark
+	public String prettySmall() {
+		return Maths.toPrettyString(small, precision);
+	}
+	
+	@Benchmark
+	public String prettyLarge() {
+		return Maths.toPrettyString(large, precision);
+	}
+	
+	@Benchmark
+	public String legacySmall() {
+		return legacy(small, precision);
+	}
+	
+	@Benchmark
+	public String legacyLarge() {
+		return legacy(large, precision);
+	}
+	
+	@Benchmark
+	public String fixedSmall() {
+		return formatter.format(small, precision, Notation.FIXED);
+	}
+	
+	@Benchmark
+	public String engineeringLarge() {
+		return formatter.format(large, precision, Notation.ENGINEERING);
+	}
+	
+	/** The old <code>toPrettyString()</code>, which truncated digits. */
+	private static String legacy(Apfloat a, long precision) {
+		String format = Math.abs(a.scale()) < 6
+				? "%#." + precision + "s" : "%." + precision + "s";
+		return String.format(format, a);
+	}
+
+}
@@ -0,0 +1,63 @@
+package xsznix.superrpn.bench;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.engine.Calculator;
+import xsznix.superrpn.engine.ImportOperator;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Measures importing a list of comma-separated numbers onto an empty stack,
+ * as a paste does, including the undo marker at the end.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ImportBenchmark {
+	
+	/** The number of values imported. */
+	@Param({ "1000", "100000", "1000000" })
+	public int values;
+	
+	/** The text to import. */
+	private String text;
+	
+	@Setup
+	public void setUp() {
+		Random rand = new Random(1);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values; i++) {
+			sb.append(rand.nextInt(100000)).append('.')
+					.append(rand.nextInt(1000));
+			sb.append(i % 10 == 9 ? "\n" : ", ");
+		}
+		text = sb.toString();
+	}
+	
+	@Benchmark
+	public int paste() throws OperationException {
+		Calculator calc = new Calculator();
+		calc.execute("paste", new ImportOperator(new StringReader(text)));
+		return calc.getStack().height();
+	}
+
+}
@@ -0,0 +1,80 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.util.Maths;
+
+/**
+ * Compares the logarithms and powers in <code>Maths</code>, which take the
+ * logarithms of their bases from the constant cache, to the
+ * <code>ApfloatMath</code> functions that compute them on every call.
+ * @author Xuming Zeng
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogBenchmark {
+
+	/** The precision of the operands. */
+	@Param({ "36", "1000" })
+	public long precision;
+
+	private Apfloat x;
+
+	private Apfloat base;
+
+	@Setup
+	public void setUp() {
+		x = new Apfloat("123.456", precision);
+		base = new Apfloat("7", precision);
+	}
+
+	@Benchmark
+	public Apfloat log10Cached() {
+		return Maths.log10(x);
+	}
+
+	@Benchmark
+	public Apfloat log10Uncached() {
+		return ApfloatMath.log(x, new Apfloat(10));
+	}
+
+	@Benchmark
+	public Apfloat logyCached() {
+		return Maths.log(x, base);
+	}
+
+	@Benchmark
+	public Apfloat logyUncached() {
+		return ApfloatMath.log(x, base);
+	}
+
+	@Benchmark
+	public Apfloat exp2Cached() {
+		return Maths.exp2(base.divide(x));
+	}
+
+	@Benchmark
+	public Apfloat exp2Uncached() {
+		return ApfloatMath.pow(new Apfloat(2), base.divide(x));
+	}
+
+}
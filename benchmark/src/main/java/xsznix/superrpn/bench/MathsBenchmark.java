@@ -0,0 +1,59 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.err.OperationException;
+import xsznix.superrpn.util.Maths;
+
+/**
+ * Measures the combinatorial functions in <code>Maths</code> for large
+ * arguments, choosing half of <code>n</code> items.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathsBenchmark {
+	
+	/** The number of items to choose from. */
+	@Param({ "100", "1000", "10000", "1000000" })
+	public long n;
+	
+	private Apint apn;
+	
+	private Apint apk;
+	
+	@Setup
+	public void setUp() {
+		apn = new Apint(n);
+		apk = new Apint(n / 2);
+	}
+	
+	@Benchmark
+	public Apint nCr() throws OperationException {
+		return Maths.nCr(apn, apk);
+	}
+	
+	@Benchmark
+	public Apint nPr() throws OperationException {
+		return Maths.nPr(apn, apk);
+	}
+
+}
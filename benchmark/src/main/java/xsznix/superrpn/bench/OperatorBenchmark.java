@@ -0,0 +1,99 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.StackSnapshot;
+import xsznix.superrpn.engine.Calculator;
+import xsznix.superrpn.engine.Operator;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Measures every operator on the keyboard at several internal precisions,
+ * from the double fast path up to a thousand digits. Each invocation restores
+ * the stack to the same two operands and performs the operator once. Undo and
+ * redo are measured by <code>StackBenchmark</code> instead, since they need
+ * an undo history.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OperatorBenchmark {
+	
+	/** The name of the operator. */
+	@Param({ "digit5", "neg", "point", "ee", "bksp", "enter",
+			"swap", "drop", "clear", "degrad",
+			"+", "-", "*", "/", "%",
+			"inv", "sq", "cube", "sqrt", "invsqrt", "cbrt",
+			"sin", "cos", "tan", "sinh", "cosh", "tanh",
+			"asin", "acos", "atan", "asinh", "acosh", "atanh", "atan2",
+			"exp", "exp2", "exp10", "pow", "root", "ln", "log", "logy",
+			"lcm", "gcd", "ncr", "npr", "fact", "gamma",
+			"m1c", "m2c", "m1+", "m2+", "m1-", "m2-", "m1r", "m2r",
+			"pi", "e" })
+	public String op;
+	
+	/** The internal precision of the stack. */
+	@Param({ "15", "36", "1000" })
+	public long precision;
+	
+	private Calculator calc;
+	
+	private ComputationStack stack;
+	
+	private Operator operator;
+	
+	/** The operands the operator is performed on. */
+	private StackSnapshot base;
+	
+	@Setup
+	public void setUp() {
+		calc = new Calculator();
+		stack = calc.getStack();
+		stack.setPrecision(precision);
+		operator = calc.getRegistry().get(op);
+		
+		// every invocation has the same operands, so measure the operators
+		// themselves rather than the result cache
+		calc.getResultCache().setCapacity(0);
+		
+		// operands in the domain of the operator
+		if (op.equals("acosh")) {
+			stack.push("7.5");
+			stack.push("1.5");
+		} else if (op.equals("lcm") || op.equals("gcd") || op.equals("ncr")
+				|| op.equals("npr")) {
+			stack.push("40");
+			stack.push("15");
+		} else {
+			stack.push("7.5");
+			stack.push("0.5");
+		}
+		base = stack.snapshot();
+	}
+	
+	@Benchmark
+	public StackSnapshot operate() throws OperationException {
+		stack.restore(base);
+		operator.operate(stack, calc);
+		return stack.snapshot();
+	}
+
+}
@@ -0,0 +1,90 @@
+package xsznix.superrpn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Measures the basic operations of <code>ComputationStack</code> at heights
+ * from 10 to a million items. The item pushed is always the same object, so
+ * only the stack itself is measured.
+ * @author Xuming Zeng
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Thread)
+public class StackBenchmark {
+	
+	/** The item pushed onto the stack. */
+	private static final ComputationStackItem ITEM =
+			new ComputationStackItem("1");
+	
+	/** The height of the stack. */
+	@Param({ "10", "1000", "100000", "1000000", "10000000" })
+	public int height;
+	
+	private ComputationStack stack;
+	
+	@Setup
+	public void setUp() {
+		stack = new ComputationStack();
+		for (int i = 0; i < height; i++)
+			stack.push(ITEM);
+		stack.addMarker();
+		
+		// leave one operation to undo and redo
+		stack.push(ITEM);
+		stack.addMarker();
+	}
+	
+	/** Pushes and pops an item without tracking undo. */
+	@Benchmark
+	public ComputationStackItem pushPop() {
+		stack.push(ITEM);
+		return stack.pop();
+	}
+	
+	/** Pushes and pops an item with an undo marker after each, as the
+	 * calculator does. */
+	@Benchmark
+	public ComputationStackItem pushPopTracked() {
+		stack.push(ITEM);
+		stack.addMarker();
+		ComputationStackItem it = stack.pop();
+		stack.addMarker();
+		return it;
+	}
+	
+	/** Undoes and redoes the last operation. */
+	@Benchmark
+	public int undoRedo() throws OperationException {
+		stack.undo();
+		stack.redo();
+		return stack.height();
+	}
+	
+	/** Looks up the item in the middle of the stack. */
+	@Benchmark
+	public ComputationStackItem getMiddle() {
+		return stack.snapshot().getItems().get(height / 2);
+	}
+
+}
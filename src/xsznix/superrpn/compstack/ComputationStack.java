@@ -1,8 +1,6 @@
 package xsznix.superrpn.compstack;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.Stack;
+import java.util.ArrayList;
 
 import org.apfloat.Apfloat;
 
@@ -11,20 +9,17 @@ import xsznix.superrpn.err.OperationException;
 import xsznix.superrpn.util.Constant;
 
 /**
- * The main computation stack for SuperRPN. It stores an array of
- * <code>ComputationStackItem</code>s in a stack that can also be accessed all
- * at once for display in the GUI. It also contains two stack-independent
- * memory registers.
+ * The main computation stack for SuperRPN. It stores
+ * <code>ComputationStackItem</code>s in a persistent stack, so that the whole
+ * stack can be captured at once for display in the GUI or for undo without
+ * copying. It also contains two stack-independent memory registers.
  * @author Xuming Zeng
- *
+ * 
  */
 public class ComputationStack {
 	
 	/** The computation stack. */
-	private ComputationStackItem[] items;
-	
-	/** The top/height of the stack. */
-	private int stackTop;
+	private PersistentStack items;
 	
 	/** Memory register 1 */
 	private Apfloat mem1;
@@ -32,35 +27,95 @@ public class ComputationStack {
 	/** Memory register 2 */
 	private Apfloat mem2;
 	
+	/** The internal precision of new items, in digits. */
+	private long precision;
+	
 	/** Implements undo/redo functionality. */
-	private UndoTracker undoTracker;
+	private UndoJournal undoJournal;
+	
+	/** Notified of the changes made to this stack. */
+	private ArrayList<StackListener> listeners;
+	
+	/** The state of this stack when the open transaction began, or
+	 * <code>null</code> if there is no open transaction. */
+	private StackSnapshot checkpoint;
 	
 	public ComputationStack() {
-		items = new ComputationStackItem[Constant.INIT_COMPSTACK_LENGTH];
-		stackTop = 0;
+		this(Constant.UNDO_JOURNAL_LENGTH);
+	}
+	
+	/**
+	 * Creates a new computation stack with a limited undo history. The undo
+	 * history is also limited to about
+	 * <code>Constant.UNDO_JOURNAL_MAX_BYTES</code> bytes of items.
+	 * @param undoLimit the maximum number of operations kept in the undo
+	 * history; the oldest operations are forgotten first
+	 */
+	public ComputationStack(int undoLimit) {
+		items = PersistentStack.EMPTY;
+		precision = Constant.PRECISION;
 		mem1 = Apfloat.ZERO;
 		mem2 = Apfloat.ZERO;
-		undoTracker = new UndoTracker(this);
+		undoJournal = new UndoJournal(this, undoLimit,
+				Constant.UNDO_JOURNAL_MAX_BYTES);
+		listeners = new ArrayList<StackListener>();
 	}
 	
+	/* GET/SET */
+	
 	/**
-	 * Reallocates the array containing this stack
-	 * @param len the length of the new array
-	 * @return <code>true</code> if the operation was successful
+	 * Gets the internal precision of this stack.
+	 * @return the number of digits new items and memory registers are stored
+	 * to
 	 */
-	private boolean reallocate(int len) {
-		// do not reallocate if length is unreasonable
-		if ((stackTop > len) || (len < Constant.INIT_COMPSTACK_LENGTH))
-			return false;
-		
-		// copy the array
-		ComputationStackItem[] newItems = new ComputationStackItem[len];
-		System.arraycopy(items, 0, newItems, 0, stackTop);
-		
-		// re-reference
-		items = newItems;
-		
-		return true;
+	public long getPrecision() { return precision; }
+	
+	/**
+	 * Sets the internal precision of this stack. Items already in the stack
+	 * keep their precision.
+	 * @param prec the number of digits new items and memory registers are
+	 * stored to
+	 */
+	public void setPrecision(long prec) {
+		if (prec <= 0)
+			throw new IllegalArgumentException(
+					"Precision must be positive: " + prec);
+		precision = prec;
+	}
+	
+	/**
+	 * Gets the approximate memory the undo history may keep alive.
+	 * @return the limit, in bytes
+	 */
+	public long getUndoMemoryLimit() { return undoJournal.getMaxSize(); }
+	
+	/**
+	 * Sets the approximate memory the undo history may keep alive. The oldest
+	 * operations are forgotten right away if the history is over the new
+	 * limit; the state the stack is in is always kept.
+	 * @param bytes the limit, in bytes
+	 */
+	public void setUndoMemoryLimit(long bytes) {
+		if (bytes < 0)
+			throw new IllegalArgumentException(
+					"Undo memory limit must not be negative: " + bytes);
+		undoJournal.setMaxSize(bytes);
+	}
+	
+	/**
+	 * Gets the approximate memory the undo history keeps alive.
+	 * @return the number of bytes
+	 */
+	public long getUndoMemoryUsed() { return undoJournal.getSize(); }
+	
+	/**
+	 * Checks whether this stack is imprecise enough for its values to be
+	 * computed as doubles.
+	 * @return <code>true</code> if the precision of this stack is at most
+	 * <code>Constant.DOUBLE_PRECISION</code> digits
+	 */
+	public boolean usesDoubles() {
+		return precision <= Constant.DOUBLE_PRECISION;
 	}
 	
 	/* METHODS */
@@ -69,84 +124,54 @@ public class ComputationStack {
 	 * Tests if this stack is empty.
 	 * @return <code>true</code> if the computation stack is empty
 	 */
-	public boolean empty() { return stackTop == 0; }
+	public boolean empty() { return items.empty(); }
 	
 	/**
 	 * Check how many items are in the stack
 	 * @return the number of items in the stack
 	 */
-	public int height() { return stackTop; }
+	public int height() { return items.height(); }
 	
 	/**
 	 * Looks at the object at the top of this stack without removing it from
 	 * the stack.
 	 * @return the object at the top of this stack
 	 */
-	public ComputationStackItem peek() { return items[stackTop - 1]; }
+	public ComputationStackItem peek() { return items.peek(); }
 	
 	/**
 	 * Removes the object at the top of this stack and returns that object as
-	 * the value of this function, tracking the undo operation.
+	 * the value of this function.
 	 * @return the object at the top of this stack
 	 */
 	public ComputationStackItem pop() {
-		return pop(true);
-	}
-	
-	/**
-	 * Removes the object at the top of this stack and returns that object as
-	 * the value of this function
-	 * @param track if <code>true</code>, this operation will be tracked in the
-	 * undo history.
-	 * @return the object at the top of this stack
-	 */
-	public ComputationStackItem pop(boolean track) {
-		// get the value of the object at the top of the stack
-		ComputationStackItem ret = items[stackTop - 1];
-		
-		// remove the object from the stack
-		items[stackTop - 1] = null;
-		stackTop--;
-		
-		// reallocate if the stack is too large
-		if (stackTop * 4 < items.length)
-			// length: 1.5 * stackTop
-			reallocate(stackTop + stackTop / 2);
-		
-		// track undo
-		if (track)
-			undoTracker.addStackOperation(UndoTracker.POP, ret);
-		
-		// return the value
+		ComputationStackItem ret = items.peek();
+		items = items.pop();
+		for (StackListener l : listeners)
+			l.itemsPopped(items.height());
 		return ret;
 	}
 	
 	/**
-	 * Pushes an item onto the top of this stack, tracking it in the undo
-	 * history.
+	 * Pushes an item onto the top of this stack.
 	 * @param it the item to be pushed onto this stack
 	 */
 	public void push(ComputationStackItem it) {
-		push(it, true);
+		items = items.push(it);
+		for (StackListener l : listeners)
+			l.itemPushed(items.height() - 1);
 	}
 	
 	/**
-	 * Pushes an item onto the top of this stack.
-	 * @param it the item to be pushed onto this stack
-	 * @param track if <code>true</code>, this operation will be tracked in the
-	 * undo history.
+	 * Replaces the item at the top of this stack, as a single change.
+	 * @param it the item to put in place of the top item
 	 */
-	public void push(ComputationStackItem it, boolean track) {
-		// reallocate if the stack is too small
-		if (stackTop + stackTop / 2 > items.length)
-			reallocate(stackTop + stackTop * 2 + 2);
-		
-		// push the object onto the stack
-		items[stackTop++] = it;
-		
-		// track undo
-		if (track)
-			undoTracker.addStackOperation(UndoTracker.PUSH, it);
+	public void replaceTop(ComputationStackItem it) {
+		if (it == items.peek())
+			return;
+		items = items.pop().push(it);
+		for (StackListener l : listeners)
+			l.itemsReplaced(items.height() - 1);
 	}
 	
 	/**
@@ -154,7 +179,20 @@ public class ComputationStack {
 	 * @param val the value of the item to be pushed onto this stack
 	 */
 	public void push(Apfloat val) {
-		push(new ComputationStackItem(val));
+		push(new ComputationStackItem(val, precision));
+	}
+	
+	/**
+	 * Pushes an item onto the top of this stack. The value is stored as a
+	 * double if it is finite and this stack is precise to at most
+	 * <code>Constant.DOUBLE_PRECISION</code> digits, and as a float otherwise.
+	 * @param val the value of the item to be pushed onto this stack
+	 */
+	public void push(double val) {
+		if (usesDoubles() && !Double.isNaN(val) && !Double.isInfinite(val))
+			push(new ComputationStackItem(val, precision));
+		else
+			push(new Apfloat(val, precision));
 	}
 	
 	/**
@@ -162,20 +200,64 @@ public class ComputationStack {
 	 * @param val the value of the item to be pushed onto this stack
 	 */
 	public void push(String val) {
-		push(new ComputationStackItem(val));
+		push(new ComputationStackItem(val, precision));
 	}
 	
 	/**
 	 * Gets a copy of the computation stack items in the computation stack.
+	 * Use <code>snapshot()</code> to look at the items without copying them.
 	 * @return a copy of the items in this stack
 	 */
 	public ComputationStackItem[] getItems() {
-		// make a copy of the array
-		ComputationStackItem[] ret = new ComputationStackItem[stackTop];
-		System.arraycopy(items, 0, ret, 0, stackTop);
+		return items.toArray();
+	}
+	
+	/**
+	 * Captures the current state of this stack. This takes constant time no
+	 * matter how many items are in the stack.
+	 * @return a snapshot of the items and memory registers
+	 */
+	public StackSnapshot snapshot() {
+		return new StackSnapshot(items, mem1, mem2);
+	}
+	
+	/**
+	 * Replaces the items and memory registers of this stack with those of a
+	 * snapshot. The change is undone like any other operation.
+	 * @param s the snapshot to restore
+	 */
+	public void restore(StackSnapshot s) {
+		PersistentStack oldItems = items;
+		Apfloat oldMem1 = mem1;
+		Apfloat oldMem2 = mem2;
 		
-		// return the array
-		return ret;
+		items = s.getItems();
+		mem1 = s.getMem1();
+		mem2 = s.getMem2();
+		
+		if (listeners.isEmpty())
+			return;
+		
+		// only report the items that are not shared with the old stack
+		if (items != oldItems) {
+			int common = items.commonHeight(oldItems);
+			for (StackListener l : listeners)
+				l.itemsReplaced(common);
+		}
+		if (mem1 != oldMem1)
+			fireMemoryChanged(1);
+		if (mem2 != oldMem2)
+			fireMemoryChanged(2);
+	}
+	
+	/**
+	 * Checks whether this stack is in the state captured by a snapshot.
+	 * @param s the snapshot to compare to
+	 * @return <code>true</code> if nothing has changed since the snapshot
+	 */
+	public boolean isAt(StackSnapshot s) {
+		return items == s.getItems() && mem1 == s.getMem1()
+				&& mem2 == s.getMem2();
 	}
 	
 	// Memory register get/set
@@ -184,213 +266,102 @@ public class ComputationStack {
 	public Apfloat getMem2() { return mem2; }
 	
 	public void setMem1(Apfloat val) {
-		setMem1(val, true);
-	}
-	public void setMem1(Apfloat val, boolean track) {
-		mem1 = val.precision(Constant.PRECISION);
-		if (track)
-			undoTracker.addMemregOperation(UndoTracker.MEM1, mem1);
+		mem1 = val.precision(precision);
+		fireMemoryChanged(1);
 	}
 	public void setMem2(Apfloat val) {
-		setMem2(val, true);
+		mem2 = val.precision(precision);
+		fireMemoryChanged(2);
+	}
+	
+	// change listeners
+	
+	/**
+	 * Registers a listener to be notified of the changes made to this stack.
+	 * @param l the listener to add
+	 */
+	public void addStackListener(StackListener l) { listeners.add(l); }
+	
+	/**
+	 * Stops notifying a listener of the changes made to this stack.
+	 * @param l the listener to remove
+	 */
+	public void removeStackListener(StackListener l) { listeners.remove(l); }
+	
+	private void fireMemoryChanged(int register) {
+		for (StackListener l : listeners)
+			l.memoryChanged(register);
+	}
+	
+	// transactions
+	
+	/**
+	 * Begins a transaction. The changes made until the transaction is
+	 * committed can be rolled back without going through the undo history.
+	 * Since items are never copied, beginning a transaction takes constant
+	 * time.
+	 * @throws IllegalStateException if a transaction is already open
+	 */
+	public void begin() {
+		if (checkpoint != null)
+			throw new IllegalStateException("A transaction is already open.");
+		checkpoint = snapshot();
+	}
+	
+	/**
+	 * Keeps the changes made since the open transaction began.
+	 * @throws IllegalStateException if there is no open transaction
+	 */
+	public void commit() {
+		if (checkpoint == null)
+			throw new IllegalStateException("No transaction is open.");
+		checkpoint = null;
 	}
-	public void setMem2(Apfloat val, boolean track) {
-		mem2 = val.precision(Constant.PRECISION);
-		if (track)
-			undoTracker.addMemregOperation(UndoTracker.MEM2, mem2);
+	
+	/**
+	 * Puts the items and memory registers back the way they were when the
+	 * open transaction began. The undo history is not touched, and only the
+	 * items above those shared with the checkpoint are reported to the
+	 * listeners as replaced.
+	 * @throws IllegalStateException if there is no open transaction
+	 */
+	public void rollback() {
+		if (checkpoint == null)
+			throw new IllegalStateException("No transaction is open.");
+		StackSnapshot s = checkpoint;
+		checkpoint = null;
+		if (!isAt(s))
+			restore(s);
 	}
 	
+	/**
+	 * Checks whether a transaction is open.
+	 * @return <code>true</code> if <code>begin()</code> has been called
+	 * without a matching <code>commit()</code> or <code>rollback()</code>
+	 */
+	public boolean inTransaction() { return checkpoint != null; }
+	
 	// undo tracker operations
 	
-	/** Undoes the most recent operation on this stack. 
+	/** Undoes the most recent operation on this stack.
 	 * @throws OperationException if something goes wrong */
-	public void undo() throws OperationException { undoTracker.undo(); }
+	public void undo() throws OperationException { undoJournal.undo(); }
 	
-	/** Redoes the most recently undone operation on this stack. 
+	/** Redoes the most recently undone operation on this stack.
 	 * @throws OperationException if something goes wrong */
-	public void redo() throws OperationException { undoTracker.redo(); }
+	public void redo() throws OperationException { undoJournal.redo(); }
 	
 	/** Marks the end of a single complete operation. */
-	public void addMarker() { undoTracker.addMarker(); }
+	public void addMarker() { undoJournal.addMarker(false); }
 	
 	/**
-	 * Tracks undo operations.
-	 * @author Xuming Zeng
+	 * Marks the end of a single complete operation.
+	 * @param coalesce if <code>true</code>, the operation only edited the
+	 * item at the top of the stack, and is merged into the previous operation
+	 * if that was also such an edit of the same item
 	 */
-	private class UndoTracker {
-		
-		// types of operations
-		public static final int PUSH = 0;
-		public static final int POP = 1;
-		public static final int MEM1 = 2;
-		public static final int MEM2 = 3;
-		
-		/**
-		 * The computation stack this undo tracker tracks and modifies.
-		 */
-		private ComputationStack stack;
-		
-		/** Undo history */
-		private Stack<LinkedList<UndoOperation>> opHistory;
-		/** Redo history */
-		private Stack<LinkedList<UndoOperation>> opFuture;
-		
-		public UndoTracker(ComputationStack s) {
-			stack = s;
-			
-			// init stacks
-			opHistory = new Stack<LinkedList<UndoOperation>>();
-			opHistory.push(new LinkedList<UndoOperation>());
-			
-			opFuture = new Stack<LinkedList<UndoOperation>>();
-			opFuture.push(new LinkedList<UndoOperation>());
-		}
-		
-		public void addStackOperation(int type, ComputationStackItem val) {
-			StackOperation op = new StackOperation();
-			op.type = type;
-			op.value = val;
-			
-			opHistory.peek().add(op);
-		}
-		
-		public void addMemregOperation(int type, Apfloat val) {
-			MemregOperation op = new MemregOperation();
-			op.type = type;
-			op.value = val;
-			
-			opHistory.peek().add(op);
-		}
-		
-		/**
-		 * Marks the end of a single complete operation.
-		 */
-		public void addMarker() {
-			if ((opHistory.empty()) || (opHistory.peek().size() != 0)) {
-				opHistory.push(new LinkedList<UndoOperation>());
-				opFuture = new Stack<LinkedList<UndoOperation>>();
-				opFuture.push(new LinkedList<UndoOperation>());
-			}
-		}
-		
-		/**
-		 * Undoes the most recent operation on this stack.
-		 * @throws OperationException if something goes wrong
-		 */
-		public void undo() throws OperationException {
-			// the topmost item on the stack should be empty
-			if (opHistory.peek().size() > 0)
-				throw new OperationException(
-						"The operation was not properly marked.");
-			opHistory.pop();
-			
-			// nothing to undo if history is empty
-			if (opHistory.empty()) {
-				opHistory.push(new LinkedList<UndoOperation>());
-				return;
-			}
-			
-			// revert operations
-			LinkedList<UndoOperation> opList = opHistory.pop();
-			ListIterator<UndoOperation> it = opList.listIterator(opList.size());
-			UndoOperation op;
-			while (it.hasPrevious()) {
-				op = it.previous();
-				
-				switch (op.type) {
-				case POP:
-					stack.push(((StackOperation) op).value, false);
-					break;
-				case PUSH:
-					stack.pop(false);
-					break;
-				case MEM1:
-					Apfloat mem1Val = stack.getMem1();
-					stack.setMem1(((MemregOperation) op).value, false);
-					((MemregOperation) op).value = mem1Val;
-					break;
-				case MEM2:
-					Apfloat mem2Val = stack.getMem2();
-					stack.setMem2(((MemregOperation) op).value, false);
-					((MemregOperation) op).value = mem2Val;
-					break;
-				}
-			}
-			
-			// add to redo stack
-			opFuture.pop();
-			opFuture.push(opList);
-			opFuture.push(new LinkedList<UndoOperation>());
-			
-			// mark end of operation
-			opHistory.push(new LinkedList<UndoOperation>());
-		}
-		
-		/**
-		 * Redoes the most recent operation on this stack.
-		 * @throws OperationException when something goes wrong
-		 */
-		public void redo() throws OperationException {
-			// the topmost item on the stack should be empty
-			if (opFuture.peek().size() > 0)
-				throw new OperationException(
-						"The operation was not properly marked.");
-			opFuture.pop();
-			
-			// nothing to redo if future is empty
-			if (opFuture.empty()) {
-				opFuture.push(new LinkedList<UndoOperation>());
-				return;
-			}
-			
-			// revert operations
-			LinkedList<UndoOperation> opList = opFuture.pop();
-			ListIterator<UndoOperation> it = opList.listIterator(0);
-			UndoOperation op;
-			while (it.hasNext()) {
-				op = it.next();
-				
-				switch (op.type) {
-				case POP:
-					stack.pop(false);
-					break;
-				case PUSH:
-					stack.push(((StackOperation) op).value, false);
-					break;
-				case MEM1:
-					Apfloat mem1Val = stack.getMem1();
-					stack.setMem1(((MemregOperation) op).value, false);
-					((MemregOperation) op).value = mem1Val;
-					break;
-				case MEM2:
-					Apfloat mem2Val = stack.getMem2();
-					stack.setMem2(((MemregOperation) op).value, false);
-					((MemregOperation) op).value = mem2Val;
-					break;
-				}
-			}
-			
-			// add to undo stack
-			opHistory.pop();
-			opHistory.push(opList);
-			opHistory.push(new LinkedList<UndoOperation>());
-			
-			// mark end of operation
-			opFuture.push(new LinkedList<UndoOperation>());
-		}
-		
-		private class UndoOperation {
-			public int type;
-		}
-		
-		private class StackOperation extends UndoOperation {
-			public ComputationStackItem value;
-		}
-		
-		private class MemregOperation extends UndoOperation {
-			public Apfloat value;
-		}
-		
+	public void addMarker(boolean coalesce) {
+		undoJournal.addMarker(coalesce);
 	}
 
 }
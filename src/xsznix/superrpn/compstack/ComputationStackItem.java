@@ -1,5 +1,10 @@
 package xsznix.superrpn.compstack;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
 import org.apfloat.Apfloat;
 
 import xsznix.superrpn.util.Constant;
@@ -8,11 +13,34 @@ import xsznix.superrpn.util.Maths;
 /**
  * An item in the computation stack. The item is stored both as a float and a
  * string so that it is possible to enter in digits in decimal without any loss
- * of precision.
+ * of precision.<br>
+ * 
+ * Items with a precision of at most <code>Constant.DOUBLE_PRECISION</code>
+ * digits may instead hold a primitive <code>double</code>, which is only
+ * converted to a float when the float value is asked for.<br>
+ * 
+ * A number being typed is kept in an <code>EntryBuffer</code>. Typing a
+ * character gives a new item that extends the buffer in place, so the items
+ * already in the stack and in the undo history keep their values; the text is
+ * only turned into a string or a float once it is asked for.<br>
+ * 
+ * Values may run to millions of digits, so the stack view only asks for as
+ * many characters as fit in a row, and the full value is written out in
+ * chunks rather than returned as one string.
  * @author Xuming Zeng
  *
  */
 public class ComputationStackItem {
+	
+	/** Stands for the characters left out of a value too long to show. */
+	private static final String ELLIPSIS = "\u2026";
+	
+	/** The approximate number of bytes an item takes up by itself. */
+	private static final long ITEM_BYTES = 80;
+	
+	/** The approximate number of bytes a string or float takes up, not
+	 * counting its characters or digits. */
+	private static final long STRING_BYTES = 48;
 
 	/**
 	 * True if this stack item is currently being stored as a string.
@@ -21,14 +49,57 @@ public class ComputationStackItem {
 	private boolean isStr;
 	
 	/**
-	 * The float representation of the value of this item.
+	 * True if this stack item is currently being stored as a double.
+	 */
+	private boolean isDouble;
+	
+	/**
+	 * The float representation of the value of this item. Computed lazily and
+	 * kept if the item is being stored as a string or a double. Volatile
+	 * because items are shared with the operations running on other threads.
+	 */
+	private volatile Apfloat value;
+	
+	/**
+	 * The double representation of the value of this item, if it is being
+	 * stored as a double.
+	 */
+	private double dvalue;
+	
+	/**
+	 * The string representation of the value of this item. Computed lazily
+	 * from the entry buffer if this item is being typed. Volatile because
+	 * items are shared with the operations running on other threads.
+	 */
+	private volatile String valStr;
+	
+	/**
+	 * The characters of the number being typed, or <code>null</code> if this
+	 * item is not being typed. Only the first <code>entryLength</code>
+	 * characters belong to this item.
+	 */
+	private EntryBuffer entry;
+	
+	/** The number of characters of the entry buffer that this item sees. */
+	private int entryLength;
+	
+	/** The position of the decimal point in the entry buffer, or -1. */
+	private int pointPos;
+	
+	/** The position of the exponent in the entry buffer, or -1. */
+	private int ePos;
+	
+	/**
+	 * The internal precision of the value of this item, in digits.
 	 */
-	private Apfloat value;
+	private long precision;
 	
 	/**
-	 * The string representation of the value of this item.
+	 * The most recently rendered strings of the float value of this item, or
+	 * <code>null</code>. Volatile because items are shared with the operations
+	 * running on other threads.
 	 */
-	private String valStr;
+	private volatile Rendering rendering;
 	
 	/* CONSTRUCTORS */
 	
@@ -39,7 +110,8 @@ public class ComputationStackItem {
 	 * <code>valStr</code> has been initialized to an empty string.
 	 */
 	public ComputationStackItem() {
-		value = Apfloat.ZERO.precision(Constant.PRECISION);
+		precision = Constant.PRECISION;
+		value = Apfloat.ZERO.precision(precision);
 	}
 	
 	/**
@@ -47,8 +119,18 @@ public class ComputationStackItem {
 	 * @param val the value of this stack item
 	 */
 	public ComputationStackItem(Apfloat val) {
-		value = (val.precision() == Constant.PRECISION ?
-				val : val.precision(Constant.PRECISION));
+		this(val, Constant.PRECISION);
+	}
+	
+	/**
+	 * Constructs a new stack item with an initial float value.<br>
+	 * @param val the value of this stack item
+	 * @param prec the internal precision of this stack item
+	 */
+	public ComputationStackItem(Apfloat val, long prec) {
+		precision = prec;
+		value = (val.precision() == precision ?
+				val : val.precision(precision));
 	}
 	
 	/**
@@ -56,10 +138,50 @@ public class ComputationStackItem {
 	 * @param str the string value of this stack item
 	 */
 	public ComputationStackItem(String str) {
+		this(str, Constant.PRECISION);
+	}
+	
+	/**
+	 * Constructs a new stack item with an initial string value.<br>
+	 * @param str the string value of this stack item
+	 * @param prec the internal precision of this stack item
+	 */
+	public ComputationStackItem(String str, long prec) {
+		precision = prec;
 		valStr = str;
 		isStr = true;
 	}
 	
+	/**
+	 * Constructs a new stack item with an initial double value.<br>
+	 * @param val the value of this stack item; must be finite
+	 * @param prec the internal precision of this stack item, at most
+	 * <code>Constant.DOUBLE_PRECISION</code>
+	 */
+	public ComputationStackItem(double val, long prec) {
+		precision = prec;
+		dvalue = val;
+		isDouble = true;
+	}
+	
+	/**
+	 * Constructs a new stack item for a number being typed.<br>
+	 * @param buf the characters typed
+	 * @param len the number of characters of <code>buf</code> in this item
+	 * @param point the position of the decimal point, or -1
+	 * @param e the position of the exponent, or -1
+	 * @param prec the internal precision of this stack item
+	 */
+	private ComputationStackItem(EntryBuffer buf, int len, int point, int e,
+			long prec) {
+		precision = prec;
+		entry = buf;
+		entryLength = len;
+		pointPos = point;
+		ePos = e;
+		isStr = true;
+	}
+	
 	/* GET/SET */
 	
 	/**
@@ -69,26 +191,91 @@ public class ComputationStackItem {
 	 */
 	public boolean storedAsString() { return isStr; }
 	
+	/**
+	 * Gets the internal precision of this stack item.
+	 * @return the number of digits the value is stored to
+	 */
+	public long getPrecision() { return precision; }
+	
+	/**
+	 * Estimates the memory this item takes up, counting the value, the string
+	 * and the typed characters that have been made so far.
+	 * @return the approximate number of bytes
+	 */
+	public long getSize() {
+		long bytes = ITEM_BYTES;
+		Apfloat val = value;
+		if (val != null)
+			bytes += sizeOf(val);
+		String str = valStr;
+		if (str != null)
+			bytes += STRING_BYTES + 2L * str.length();
+		if (entry != null)
+			bytes += 2L * entryLength;
+		return bytes;
+	}
+	
+	/**
+	 * Estimates the memory a float takes up. Apfloat packs 18 decimal digits
+	 * into each <code>long</code>.
+	 * @param val the float
+	 * @return the approximate number of bytes
+	 */
+	static long sizeOf(Apfloat val) {
+		return STRING_BYTES + val.size() * 8 / 18;
+	}
+	
 	/**
 	 * Gets the value of the stack item as a float
 	 * @return the value
 	 */
 	public Apfloat getValue() {
-		if (isStr)
-			return toFloat();
-		else
-			return value;
+		Apfloat val = value;
+		if (val == null) {
+			if (isStr) {
+				val = toFloat();
+			} else {
+				// round the binary value to the nearest decimal, so that e.g.
+				// 0.1 + 0.2 is exactly 0.3
+				val = new Apfloat(new BigDecimal(dvalue,
+						new MathContext((int) precision)), precision);
+			}
+			value = val;
+		}
+		return val;
 	}
 	
 	/**
-	 * Sets the value of the stack item
-	 * @param val the value of the stack item to set to
+	 * Whether the stack item is being stored as a double
+	 * @return <code>true</code> if the current stack item is being stored
+	 * as a double
 	 */
-	public void setValue(Apfloat val) {
-		isStr = false;
-		value = (val.precision() == Constant.PRECISION ?
-				val : val.precision(Constant.PRECISION));
-		valStr = null;
+	public boolean storedAsDouble() { return isDouble; }
+	
+	/**
+	 * Gets the value of the stack item as a double.
+	 * @return the value, rounded to a double, or <code>NaN</code> if the value
+	 * is out of the range of a double
+	 */
+	public double getDouble() {
+		if (isDouble)
+			return dvalue;
+		
+		double d = Double.NaN;
+		if (isStr) {
+			try {
+				d = Double.parseDouble(trimmedStr());
+			} catch (NumberFormatException err) {
+				// fall back to apfloat's own parsing rules
+			}
+		}
+		if (Double.isNaN(d))
+			d = getValue().doubleValue();
+		
+		// a nonzero value that rounds to zero has underflowed
+		if (!Maths.fitsDouble(d) || (d == 0.0 && getValue().signum() != 0))
+			return Double.NaN;
+		return d;
 	}
 	
 	/**
@@ -97,59 +284,129 @@ public class ComputationStackItem {
 	 */
 	public String getValStr(int precision) {
 		if (isStr)
-			return valStr;
+			return str();
 		else
 			return toPrettyString(precision);
 	}
 	
 	/**
-	 * Sets the value of the stack item
-	 * @param str the value of the stack item to set to
+	 * Gets the value of the stack item as a string to show in a row of a
+	 * given width. A value that does not fit shows its leading digits, an
+	 * ellipsis and its exponent; only those characters are copied out of a
+	 * number being typed.
+	 * @param precision the displayed precision
+	 * @param width the number of characters that fit in the row
+	 * @return the value, at most <code>width</code> characters long unless
+	 * the row is too narrow for even one digit and an ellipsis
 	 */
-	public void setValue(String str) {
-		isStr = true;
-		valStr = str;
-		value = null;
+	public String getDisplayStr(int precision, int width) {
+		String str = isStr ? valStr : toPrettyString(precision);
+		if (str != null)
+			return window(str, str.length(), str.indexOf('e'), width);
+		return window(null, entryLength, ePos, width);
 	}
 	
 	/**
-	 * Appends a character to the end of the value string.<br>
+	 * Writes the full value of the stack item: every digit of the float, or
+	 * the string as it was typed. Nothing longer than a chunk is copied into
+	 * a string on the way.
+	 * @param out the writer to write to
+	 * @throws IOException if the writer fails
+	 */
+	public void writeTo(Writer out) throws IOException {
+		if (isStr) {
+			String str = valStr;
+			if (str != null)
+				out.write(str);
+			else
+				entry.writeTo(out, entryLength);
+		} else {
+			// fixed notation unless it takes more zeros than there are digits
+			Apfloat val = getValue();
+			val.writeTo(out, val.signum() == 0 ||
+					Math.abs(val.scale()) <= val.precision());
+		}
+	}
+	
+	/**
+	 * Types a character at the end of the value string. Numbers that are not
+	 * being typed start from the string they are displayed as, and a lone
+	 * zero is replaced by the first digit typed.<br>
 	 * The character is only appended if it creates a valid number afterwards. 
 	 * @param c the character to append
-	 * @return <code>true</code> if the operation was successful
+	 * @param precision the displayed precision
+	 * @return the item with the character appended, or this item if the
+	 * character is not valid here
 	 */
-	public boolean strAppend(char c, int precision) {
+	public ComputationStackItem append(char c, int precision) {
+		if (entry == null)
+			return startEntry(precision).append(c, precision);
+		
 		// check if the character can be appended
 		if (!(
 				// numbers are valid
 				Character.isDigit(c) ||
-				// decimal point is valid only once in a number
-				(c == '.' && valStr.indexOf('.') == -1) ||
+				// decimal point is valid only once, and not in the exponent
+				(c == '.' && pointPos == -1 && ePos == -1) ||
 				// 'e' is also valid only once in a number
-				(c == 'e' && valStr.indexOf('e') == -1)
+				(c == 'e' && ePos == -1)
 				))
-			return false;
+			return this;
 		
-		// append the character, setting store mode if necessary
-		// FIXME: sometimes leading zero is not handled properly
-		if (isStr) {
-			if (valStr == "0")
-				valStr = "" + c;
-			else
-				valStr += c;
+		// a lone zero is replaced by the first digit
+		if (Character.isDigit(c) && entryLength == 1 && entry.charAt(0) == '0')
+			return new ComputationStackItem(
+					new EntryBuffer(String.valueOf(c)), 1, -1, -1,
+					this.precision);
+		
+		// extend the buffer in place unless another item already has
+		EntryBuffer buf = entry;
+		if (!buf.extend(entryLength, c)) {
+			buf = buf.copy(entryLength);
+			buf.extend(entryLength, c);
 		}
-		else {
-			String oldStr = toPrettyString(precision);
-			if (oldStr == "0") {
-				valStr = "" + c;
-			}
-			else
-				valStr = oldStr + c;
-			isStr = true;
-			value = null;
+		return new ComputationStackItem(buf, entryLength + 1,
+				c == '.' ? entryLength : pointPos,
+				c == 'e' ? entryLength : ePos, this.precision);
+	}
+	
+	/**
+	 * Deletes the last character of the value string, along with a decimal
+	 * point, exponent or sign left at the end. Numbers that are not being
+	 * typed start from the string they are displayed as.
+	 * @param precision the displayed precision
+	 * @return the item with the character deleted
+	 */
+	public ComputationStackItem backspace(int precision) {
+		if (entry == null)
+			return startEntry(precision).backspace(precision);
+		
+		int len = entryLength - 1;
+		if (len > 0) {
+			char lastChar = entry.charAt(len - 1);
+			if ((lastChar == 'e') || (lastChar == '.') || (lastChar == '-'))
+				len--;
 		}
+		if (len <= 0)
+			return new ComputationStackItem("0", this.precision);
 		
-		return true;
+		return new ComputationStackItem(entry, len,
+				pointPos < len ? pointPos : -1, ePos < len ? ePos : -1,
+				this.precision);
+	}
+	
+	/**
+	 * Creates an item for typing more characters after the string this item
+	 * is displayed as.
+	 * @param precision the displayed precision
+	 * @return the new item, with a buffer of its own
+	 */
+	private ComputationStackItem startEntry(int precision) {
+		String str = getValStr(precision);
+		if (str.length() == 0)
+			str = "0";
+		return new ComputationStackItem(new EntryBuffer(str), str.length(),
+				str.indexOf('.'), str.indexOf('e'), this.precision);
 	}
 	
 	public String toString() {
@@ -158,10 +415,43 @@ public class ComputationStackItem {
 	
 	/**
 	 * Prints a pretty string from the float representation of this stack item.
+	 * The strings for the last <code>Rendering.DEPTH</code> display precisions
+	 * are remembered.
 	 * @return the formatted string
 	 */
 	private String toPrettyString(int precision) {
-		return Maths.toPrettyString(value, precision);
+		Rendering r = rendering;
+		for (Rendering it = r; it != null; it = it.older) {
+			if (it.precision == precision)
+				return it.str;
+		}
+		
+		String str = Maths.toPrettyString(getValue(), precision);
+		rendering = new Rendering(precision, str, r);
+		return str;
+	}
+	
+	/**
+	 * Fits the string representation of this stack item into a row, leaving
+	 * out digits before the exponent if it is too long. An exponent that
+	 * would take up more than half the row is left out as well.
+	 * @param str the string, or <code>null</code> to read the entry buffer
+	 * @param length the length of the string
+	 * @param e the position of the exponent, or -1
+	 * @param width the number of characters that fit
+	 * @return the string to show
+	 */
+	private String window(String str, int length, int e, int width) {
+		if (length <= width)
+			return str != null ? str : str();
+		
+		int tail = (e == -1 || length - e > width / 2) ? 0 : length - e;
+		int head = Math.max(1, width - 1 - tail);
+		if (str != null)
+			return str.substring(0, head) + ELLIPSIS
+					+ str.substring(length - tail);
+		return entry.substring(0, head) + ELLIPSIS
+				+ entry.substring(length - tail, length);
 	}
 	
 	/**
@@ -170,14 +460,74 @@ public class ComputationStackItem {
 	 * @return the float value
 	 */
 	private Apfloat toFloat() {
-		String str;
-		char lastChar = valStr.charAt(valStr.length() - 1); 
+		return new Apfloat(trimmedStr(), precision);
+	}
+	
+	/**
+	 * Removes an unfinished decimal point, exponent or sign from the end of
+	 * the string representation of this stack item.
+	 * @return the string representation, ready to be parsed
+	 */
+	private String trimmedStr() {
+		String str = str();
+		char lastChar = str.charAt(str.length() - 1); 
 		if ((lastChar == 'e') || (lastChar == '.') || (lastChar == '-'))
-			str = valStr.substring(0, valStr.length() - 1);
+			return str.substring(0, str.length() - 1);
 		else
-			str = valStr;
+			return str;
+	}
+	
+	/**
+	 * Gets the string representation of this stack item, copying it out of
+	 * the entry buffer the first time if the item is being typed.
+	 * @return the string representation
+	 */
+	private String str() {
+		String str = valStr;
+		if (str == null && entry != null) {
+			str = entry.toString(entryLength);
+			valStr = str;
+		}
+		return str;
+	}
+
+	
+	/**
+	 * A string rendered from the float value of a stack item at one display
+	 * precision, and the strings rendered before it. Immutable, so that it can
+	 * be replaced in one step.
+	 * @author Xuming Zeng
+	 * 
+	 */
+	private static class Rendering {
+		/** The number of display precisions remembered. */
+		private static final int DEPTH = 2;
+		
+		/** The display precision the string was rendered at. */
+		private final int precision;
+		/** The rendered string. */
+		private final String str;
+		/** The previously rendered string, or <code>null</code>. */
+		private final Rendering older;
 		
-		return new Apfloat(str, Constant.PRECISION);
+		/**
+		 * Creates a new rendering, forgetting the oldest ones if there are
+		 * too many.
+		 * @param prec the display precision
+		 * @param s the rendered string
+		 * @param prev the previous rendering, or <code>null</code>
+		 */
+		public Rendering(int prec, String s, Rendering prev) {
+			this(prec, s, prev, DEPTH - 1);
+		}
+		
+		private Rendering(int prec, String s, Rendering prev, int keep) {
+			precision = prec;
+			str = s;
+			older = (keep == 0 || prev == null) ? null :
+					new Rendering(prev.precision, prev.str, prev.older,
+							keep - 1);
+		}
 	}
 
 }
@@ -0,0 +1,110 @@
+package xsznix.superrpn.compstack;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The characters of a number being typed. A buffer is shared by every stack
+ * item along one run of edits, each of which sees only the first characters
+ * up to its own length, so the characters an item sees never change. Only
+ * the item that sees the whole buffer may extend it in place; any other item
+ * has to copy the characters it sees into a new buffer first. Typing a number
+ * of n digits therefore takes O(n) time instead of O(n^2).<br>
+ *
+ * Items are shared with operations running on other threads, so all access
+ * is synchronized.
+ * @author Xuming Zeng
+ *
+ */
+final class EntryBuffer {
+
+	/** The number of characters written out at a time. */
+	private static final int CHUNK = 8192;
+
+	/** The characters typed so far. */
+	private final StringBuilder chars;
+
+	/**
+	 * Creates a new buffer.
+	 * @param init the initial characters
+	 */
+	public EntryBuffer(CharSequence init) {
+		chars = new StringBuilder(Math.max(16, init.length() * 2));
+		chars.append(init);
+	}
+
+	/* METHODS */
+
+	/**
+	 * Appends a character, if the buffer holds no more than the given number
+	 * of characters.
+	 * @param length the number of characters the appending item sees
+	 * @param c the character to append
+	 * @return <code>true</code> if the character was appended, or
+	 * <code>false</code> if another item has already extended the buffer
+	 */
+	public synchronized boolean extend(int length, char c) {
+		if (chars.length() != length)
+			return false;
+		chars.append(c);
+		return true;
+	}
+
+	/**
+	 * Copies the first characters into a new buffer.
+	 * @param length the number of characters to copy
+	 * @return the new buffer
+	 */
+	public synchronized EntryBuffer copy(int length) {
+		return new EntryBuffer(chars.subSequence(0, length));
+	}
+
+	/**
+	 * Gets a character.
+	 * @param index the position of the character
+	 * @return the character
+	 */
+	public synchronized char charAt(int index) {
+		return chars.charAt(index);
+	}
+
+	/**
+	 * Gets the first characters as a string.
+	 * @param length the number of characters
+	 * @return the characters
+	 */
+	public synchronized String toString(int length) {
+		return chars.substring(0, length);
+	}
+
+	/**
+	 * Gets some of the characters as a string.
+	 * @param start the position of the first character
+	 * @param end the position after the last character
+	 * @return the characters
+	 */
+	public synchronized String substring(int start, int end) {
+		return chars.substring(start, end);
+	}
+
+	/**
+	 * Writes the first characters out a chunk at a time, so that a long
+	 * number is never copied into a string whole. The buffer is only locked
+	 * while a chunk is copied; the characters an item sees never change, so
+	 * they may be written out in pieces.
+	 * @param out the writer to write to
+	 * @param length the number of characters to write
+	 * @throws IOException if the writer fails
+	 */
+	public void writeTo(Writer out, int length) throws IOException {
+		char[] chunk = new char[Math.min(length, CHUNK)];
+		for (int i = 0; i < length; i += chunk.length) {
+			int n = Math.min(chunk.length, length - i);
+			synchronized (this) {
+				chars.getChars(i, i + n, chunk, 0);
+			}
+			out.write(chunk, 0, n);
+		}
+	}
+
+}
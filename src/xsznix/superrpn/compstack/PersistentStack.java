@@ -0,0 +1,200 @@
+package xsznix.superrpn.compstack;
+
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable stack of <code>ComputationStackItem</code>s. Pushing or popping
+ * returns a new stack that shares all of its other items with this one, so
+ * keeping an old version of a stack around costs nothing.<br>
+ * 
+ * Each cell also has a jump pointer to one of the cells below it, chosen as in
+ * Myers' applicative random-access stack, so that any item can be found in a
+ * logarithmic number of steps.
+ * @author Xuming Zeng
+ * 
+ */
+public final class PersistentStack implements Iterable<ComputationStackItem> {
+	
+	/** The empty stack. */
+	public static final PersistentStack EMPTY = new PersistentStack();
+	
+	/** The item at the top of this stack. */
+	private final ComputationStackItem item;
+	
+	/** The stack below the top item. */
+	private final PersistentStack rest;
+	
+	/** A stack further below, used to skip over cells quickly. */
+	private final PersistentStack jump;
+	
+	/** The number of items in this stack. */
+	private final int height;
+	
+	/**
+	 * Creates the empty stack.
+	 */
+	private PersistentStack() {
+		item = null;
+		rest = null;
+		jump = this;
+		height = 0;
+	}
+	
+	/**
+	 * Creates a new stack with an item on top of another stack.
+	 * @param it the item at the top of the new stack
+	 * @param r the stack below the item
+	 */
+	private PersistentStack(ComputationStackItem it, PersistentStack r) {
+		item = it;
+		rest = r;
+		height = r.height + 1;
+		
+		// jump twice as far as the cell below if it and its jump target skip
+		// over the same number of cells
+		if (r.height - r.jump.height == r.jump.height - r.jump.jump.height)
+			jump = r.jump.jump;
+		else
+			jump = r;
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Tests if this stack is empty.
+	 * @return <code>true</code> if this stack contains no items
+	 */
+	public boolean empty() { return height == 0; }
+	
+	/**
+	 * Check how many items are in this stack
+	 * @return the number of items in this stack
+	 */
+	public int height() { return height; }
+	
+	/**
+	 * Looks at the item at the top of this stack.
+	 * @return the item at the top of this stack
+	 * @throws EmptyStackException if this stack is empty
+	 */
+	public ComputationStackItem peek() {
+		if (height == 0)
+			throw new EmptyStackException();
+		return item;
+	}
+	
+	/**
+	 * Gets the stack below the top item.
+	 * @return this stack without its top item
+	 * @throws EmptyStackException if this stack is empty
+	 */
+	public PersistentStack pop() {
+		if (height == 0)
+			throw new EmptyStackException();
+		return rest;
+	}
+	
+	/**
+	 * Gets a stack with an item on top of this one.
+	 * @param it the item to push
+	 * @return the new stack
+	 */
+	public PersistentStack push(ComputationStackItem it) {
+		return new PersistentStack(it, this);
+	}
+	
+	/**
+	 * Gets the bottommost part of this stack.
+	 * @param h the height of the part to get
+	 * @return the stack made up of the bottom <code>h</code> items
+	 */
+	public PersistentStack truncate(int h) {
+		if (h < 0 || h > height)
+			throw new IndexOutOfBoundsException("Height: " + h);
+		
+		PersistentStack s = this;
+		while (s.height != h) {
+			if (s.jump.height >= h)
+				s = s.jump;
+			else
+				s = s.rest;
+		}
+		return s;
+	}
+	
+	/**
+	 * Finds out how many items at the bottom of this stack are shared with
+	 * another stack. Since shared cells are compared by identity, this takes
+	 * O(log^2 n) steps.
+	 * @param other the stack to compare to
+	 * @return the height of the largest stack that both stacks are built on
+	 */
+	public int commonHeight(PersistentStack other) {
+		int lo = 0;
+		int hi = Math.min(height, other.height);
+		if (truncate(hi) == other.truncate(hi))
+			return hi;
+		
+		// the bottom lo items are shared and the bottom hi items are not
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if (truncate(mid) == other.truncate(mid))
+				lo = mid;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+	
+	/**
+	 * Gets an item in this stack.
+	 * @param index the position of the item, counting from the bottom of the
+	 * stack starting at zero
+	 * @return the item
+	 */
+	public ComputationStackItem get(int index) {
+		if (index < 0 || index >= height)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return truncate(index + 1).item;
+	}
+	
+	/**
+	 * Copies the items in this stack into an array.
+	 * @return the items, with the bottom of the stack first
+	 */
+	public ComputationStackItem[] toArray() {
+		ComputationStackItem[] ret = new ComputationStackItem[height];
+		PersistentStack s = this;
+		for (int i = height - 1; i >= 0; i--) {
+			ret[i] = s.item;
+			s = s.rest;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Iterates over the items in this stack, starting from the top.
+	 */
+	public Iterator<ComputationStackItem> iterator() {
+		return new Iterator<ComputationStackItem>() {
+			private PersistentStack next = PersistentStack.this;
+			
+			public boolean hasNext() { return next.height != 0; }
+			
+			public ComputationStackItem next() {
+				if (next.height == 0)
+					throw new NoSuchElementException();
+				ComputationStackItem ret = next.item;
+				next = next.rest;
+				return ret;
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+}
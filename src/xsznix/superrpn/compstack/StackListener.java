@@ -0,0 +1,39 @@
+package xsznix.superrpn.compstack;
+
+/**
+ * Receives notifications of the changes made to a computation stack, so that
+ * a view of the stack only has to update the parts that changed. Listeners
+ * are called on the thread that changes the stack.
+ * @author Xuming Zeng
+ * 
+ */
+public interface StackListener {
+	
+	/**
+	 * Called when an item has been pushed onto the stack.
+	 * @param index the position of the new item, counting from the bottom of
+	 * the stack starting at zero
+	 */
+	public void itemPushed(int index);
+	
+	/**
+	 * Called when items have been popped off the stack.
+	 * @param height the height of the stack afterwards
+	 */
+	public void itemsPopped(int height);
+	
+	/**
+	 * Called when the stack has been replaced in one step, e.g. by undo. The
+	 * items below <code>index</code> are unchanged, and the items from
+	 * <code>index</code> up have been replaced.
+	 * @param index the position of the lowest item that may have changed
+	 */
+	public void itemsReplaced(int index);
+	
+	/**
+	 * Called when a memory register has changed.
+	 * @param register the number of the register, 1 or 2
+	 */
+	public void memoryChanged(int register);
+	
+}
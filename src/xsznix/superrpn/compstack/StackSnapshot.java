@@ -0,0 +1,45 @@
+package xsznix.superrpn.compstack;
+
+import org.apfloat.Apfloat;
+
+/**
+ * The state of a computation stack at one point in time: its items and its
+ * memory registers. Taking a snapshot does not copy any items, and a snapshot
+ * never changes afterwards.
+ * @author Xuming Zeng
+ * 
+ */
+public final class StackSnapshot {
+	
+	/** The items in the stack. */
+	private final PersistentStack items;
+	
+	/** Memory register 1 */
+	private final Apfloat mem1;
+	
+	/** Memory register 2 */
+	private final Apfloat mem2;
+	
+	/**
+	 * Creates a new snapshot.
+	 * @param it the items in the stack
+	 * @param m1 the value of memory register 1
+	 * @param m2 the value of memory register 2
+	 */
+	public StackSnapshot(PersistentStack it, Apfloat m1, Apfloat m2) {
+		items = it;
+		mem1 = m1;
+		mem2 = m2;
+	}
+	
+	// GETTERS
+	
+	public PersistentStack getItems() { return items; }
+	
+	public int height() { return items.height(); }
+	
+	public Apfloat getMem1() { return mem1; }
+	
+	public Apfloat getMem2() { return mem2; }
+
+}
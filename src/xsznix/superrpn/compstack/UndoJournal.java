@@ -0,0 +1,324 @@
+package xsznix.superrpn.compstack;
+
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Tracks undo operations for a computation stack.<br>
+ * 
+ * At the end of every complete operation, a snapshot of the stack is stored
+ * in a ring buffer. Snapshots before the cursor are the undo history and
+ * snapshots after it are the redo future. Since snapshots share their items,
+ * undoing or redoing an operation takes constant time however many items it
+ * touched. When the journal is full, the oldest snapshots are evicted to make
+ * room.<br>
+ * 
+ * The journal is limited both in the number of snapshots and in the memory
+ * they keep alive. Each snapshot is charged for the items and registers it
+ * does not share with the snapshot before it, estimated when it is taken, and
+ * the oldest snapshots are evicted while the total is over the limit. The
+ * total is approximate: an item is only charged to the first snapshot that
+ * holds it, and stays charged to it after it is evicted from the others.<br>
+ * 
+ * The array doubles when it fills up, but is only halved once it is three
+ * quarters empty, so a journal hovering around one size is never reallocated
+ * back and forth.
+ * @author Xuming Zeng
+ * 
+ */
+class UndoJournal {
+	
+	/** The initial length of the snapshot array. */
+	private static final int INIT_LENGTH = 16;
+	
+	/** The approximate number of bytes a snapshot takes up by itself. */
+	private static final long SNAPSHOT_BYTES = 64;
+	
+	/** The approximate number of bytes a cell of a persistent stack takes up,
+	 * not counting its item. */
+	private static final long CELL_BYTES = 40;
+	
+	/** The computation stack this journal tracks and modifies. */
+	private ComputationStack stack;
+	
+	/** The state of the stack at the end of each operation. */
+	private StackSnapshot[] states;
+	
+	/**
+	 * The approximate number of bytes each snapshot keeps alive beyond the
+	 * snapshot before it, in the same positions as <code>states</code>.
+	 */
+	private long[] sizes;
+	
+	/** The maximum number of snapshots kept. */
+	private int capacity;
+	
+	/** The approximate number of bytes all the snapshots keep alive. */
+	private long totalSize;
+	
+	/** The maximum of <code>totalSize</code>, unless the journal is down to
+	 * the snapshot the stack is in. */
+	private long maxSize;
+	
+	/** The position of the oldest snapshot in the array. */
+	private int head;
+	
+	/** The number of snapshots in the journal. */
+	private int size;
+	
+	/**
+	 * The number of the snapshot, counted from the oldest, that the stack was
+	 * in at the last marker.
+	 */
+	private int cursor;
+	
+	/**
+	 * Whether the snapshot at the cursor was taken after an edit of the top
+	 * item that the next such edit may be merged into.
+	 */
+	private boolean coalescing;
+	
+	/**
+	 * Creates a new undo journal.
+	 * @param s the computation stack to track
+	 * @param cap the maximum number of snapshots to keep
+	 * @param max the approximate maximum number of bytes the snapshots may
+	 * keep alive
+	 */
+	public UndoJournal(ComputationStack s, int cap, long max) {
+		if (cap < 2)
+			throw new IllegalArgumentException(
+					"Undo journal capacity must be at least 2.");
+		
+		stack = s;
+		capacity = cap;
+		maxSize = max;
+		states = new StackSnapshot[Math.min(INIT_LENGTH, cap)];
+		sizes = new long[states.length];
+		states[0] = s.snapshot();
+		sizes[0] = sizeOf(states[0], null);
+		totalSize = sizes[0];
+		size = 1;
+	}
+	
+	// GETTERS / SETTERS
+	
+	/**
+	 * Gets the approximate memory the undo history may keep alive.
+	 * @return the limit, in bytes
+	 */
+	public long getMaxSize() { return maxSize; }
+	
+	/**
+	 * Sets the approximate memory the undo history may keep alive, evicting
+	 * the oldest snapshots right away if they are over the new limit.
+	 * @param max the limit, in bytes
+	 */
+	public void setMaxSize(long max) {
+		maxSize = max;
+		trim();
+	}
+	
+	/**
+	 * Gets the approximate memory the undo history keeps alive.
+	 * @return the number of bytes
+	 */
+	public long getSize() { return totalSize; }
+	
+	/* METHODS */
+	
+	/**
+	 * Marks the end of a single complete operation.<br>
+	 * 
+	 * Consecutive edits of the item at the top of the stack, such as the
+	 * digits of a number being typed, are coalesced: as long as nothing else
+	 * changed, each one replaces the snapshot taken after the previous one,
+	 * so the whole run is undone at once and takes up a single snapshot.
+	 * @param coalesce <code>true</code> if the operation only edited the item
+	 * at the top of the stack
+	 */
+	public void addMarker(boolean coalesce) {
+		if (stack.isAt(current()))
+			return;
+		
+		if (coalesce && coalescing && cursor == size - 1
+				&& onlyTopChanged(current())) {
+			int i = index(cursor);
+			StackSnapshot prev = cursor > 0 ? states[index(cursor - 1)] : null;
+			states[i] = stack.snapshot();
+			totalSize -= sizes[i];
+			sizes[i] = sizeOf(states[i], prev);
+			totalSize += sizes[i];
+			trim();
+			return;
+		}
+		coalescing = coalesce;
+		
+		// a new operation makes the redo future unreachable
+		for (int i = cursor + 1; i < size; i++) {
+			states[index(i)] = null;
+			totalSize -= sizes[index(i)];
+		}
+		size = cursor + 1;
+		
+		if (size == states.length)
+			makeRoom();
+		else if (size < states.length / 4 && states.length > INIT_LENGTH)
+			reallocate(states.length / 2);
+		
+		int i = index(size);
+		states[i] = stack.snapshot();
+		sizes[i] = sizeOf(states[i], current());
+		totalSize += sizes[i];
+		size++;
+		cursor++;
+		trim();
+	}
+	
+	/**
+	 * Undoes the most recent operation.
+	 * @throws OperationException if the current operation was not marked
+	 */
+	public void undo() throws OperationException {
+		if (!stack.isAt(current()))
+			throw new OperationException(
+					"The operation was not properly marked.");
+		
+		// nothing to undo if history is empty
+		if (cursor == 0)
+			return;
+		
+		cursor--;
+		coalescing = false;
+		stack.restore(current());
+	}
+	
+	/**
+	 * Redoes the most recently undone operation.
+	 * @throws OperationException if the current operation was not marked
+	 */
+	public void redo() throws OperationException {
+		if (!stack.isAt(current()))
+			throw new OperationException(
+					"The operation was not properly marked.");
+		
+		// nothing to redo if the future is empty
+		if (cursor == size - 1)
+			return;
+		
+		cursor++;
+		coalescing = false;
+		stack.restore(current());
+	}
+	
+	/**
+	 * Gets the snapshot taken at the last marker.
+	 * @return the current snapshot
+	 */
+	private StackSnapshot current() {
+		return states[index(cursor)];
+	}
+	
+	/**
+	 * Checks whether the stack differs from a snapshot in nothing but the
+	 * item at the top.
+	 * @param s the snapshot
+	 * @return <code>true</code> if the items below the top and the memory
+	 * registers are the same
+	 */
+	private boolean onlyTopChanged(StackSnapshot s) {
+		StackSnapshot now = stack.snapshot();
+		return now.height() == s.height() && now.height() > 0
+				&& now.getItems().pop() == s.getItems().pop()
+				&& now.getMem1() == s.getMem1()
+				&& now.getMem2() == s.getMem2();
+	}
+	
+	/**
+	 * Estimates the memory a snapshot keeps alive beyond another one, from
+	 * the items above those the two share and the registers that differ.
+	 * This takes time proportional to the number of items the operation
+	 * pushed.
+	 * @param s the snapshot
+	 * @param prev the snapshot taken before it, or <code>null</code>
+	 * @return the approximate number of bytes
+	 */
+	private static long sizeOf(StackSnapshot s, StackSnapshot prev) {
+		PersistentStack items = s.getItems();
+		int common = prev == null ? 0 : items.commonHeight(prev.getItems());
+		
+		long bytes = SNAPSHOT_BYTES;
+		for (int n = items.height() - common; n > 0; n--) {
+			bytes += CELL_BYTES + items.peek().getSize();
+			items = items.pop();
+		}
+		if (prev == null || s.getMem1() != prev.getMem1())
+			bytes += ComputationStackItem.sizeOf(s.getMem1());
+		if (prev == null || s.getMem2() != prev.getMem2())
+			bytes += ComputationStackItem.sizeOf(s.getMem2());
+		return bytes;
+	}
+	
+	/**
+	 * Evicts the oldest snapshots while they keep too much memory alive,
+	 * keeping the one the stack is in.
+	 */
+	private void trim() {
+		while (totalSize > maxSize && cursor > 0)
+			evictOldest();
+	}
+	
+	/**
+	 * Makes room for one more snapshot, either by growing the array or by
+	 * evicting the oldest snapshot.
+	 */
+	private void makeRoom() {
+		if (states.length < capacity) {
+			reallocate((int) Math.min((long) states.length * 2, capacity));
+			return;
+		}
+		
+		evictOldest();
+	}
+	
+	/**
+	 * Forgets the oldest snapshot, which is not the one at the cursor.
+	 */
+	private void evictOldest() {
+		states[head] = null;
+		totalSize -= sizes[head];
+		head = index(1);
+		size--;
+		cursor--;
+	}
+	
+	/**
+	 * Copies the snapshots into a new array, with the oldest snapshot first.
+	 * @param len the length of the new array
+	 */
+	private void reallocate(int len) {
+		StackSnapshot[] newStates = new StackSnapshot[len];
+		long[] newSizes = new long[len];
+		
+		// copy in at most two runs, since the snapshots may wrap around
+		int first = Math.min(size, states.length - head);
+		System.arraycopy(states, head, newStates, 0, first);
+		System.arraycopy(states, 0, newStates, first, size - first);
+		System.arraycopy(sizes, head, newSizes, 0, first);
+		System.arraycopy(sizes, 0, newSizes, first, size - first);
+		
+		states = newStates;
+		sizes = newSizes;
+		head = 0;
+	}
+	
+	/**
+	 * Finds the position of a snapshot in the array.
+	 * @param i the number of the snapshot, counted from the oldest
+	 * @return the position of the snapshot
+	 */
+	private int index(int i) {
+		int p = head + i;
+		return p < states.length ? p : p - states.length;
+	}
+
+}
@@ -0,0 +1,187 @@
+package xsznix.superrpn.engine;
+
+import java.util.regex.Pattern;
+
+import org.apfloat.Apfloat;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.err.OperationException;
+import xsznix.superrpn.util.Constant;
+
+/**
+ * A headless RPN calculator. It owns a computation stack and the settings the
+ * operators depend on, and performs operators looked up by name in an
+ * <code>OperatorRegistry</code>. It does not need any GUI, so it can also be
+ * used to evaluate RPN scripts in batch.
+ * @author Xuming Zeng
+ *
+ */
+public class Calculator {
+
+	/** Separates the tokens in a script. */
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	/** The computation stack. */
+	private ComputationStack stack;
+
+	/** The operators this calculator can perform. */
+	private OperatorRegistry registry;
+	
+	/** The statistics of the operators performed. */
+	private OperationStats stats;
+	
+	/** The recent results of the unary and binary operators. */
+	private ResultCache resultCache;
+
+	/** The displayed precision, used when editing the text of an item. */
+	private volatile int precision;
+
+	/**
+	 * If true, trigonometric functions are evaluated in degrees. Volatile
+	 * because operators may run on an <code>OperationRunner</code>'s worker
+	 * thread.
+	 */
+	private volatile boolean degrees;
+
+	/**
+	 * Creates a new calculator with the standard operators.
+	 */
+	public Calculator() {
+		this(OperatorRegistry.getDefault());
+	}
+
+	/**
+	 * Creates a new calculator.
+	 * @param reg the operators this calculator can perform
+	 */
+	public Calculator(OperatorRegistry reg) {
+		stack = new ComputationStack();
+		registry = reg;
+		stats = new OperationStats();
+		resultCache = new ResultCache(Constant.RESULT_CACHE_SIZE);
+		precision = Constant.INIT_DISP_PRECISION;
+		degrees = false;
+	}
+
+	// GETTERS / SETTERS
+
+	public ComputationStack getStack() { return stack; }
+
+	public OperatorRegistry getRegistry() { return registry; }
+	
+	public OperationStats getStats() { return stats; }
+	
+	public ResultCache getResultCache() { return resultCache; }
+
+	public int getPrecision() { return precision; }
+
+	public void setPrecision(int p) { precision = p; }
+
+	public boolean isDegreesMode() { return degrees; }
+
+	public void setDegreesMode(boolean deg) { degrees = deg; }
+
+	/* METHODS */
+
+	/**
+	 * Performs the operator registered under a name as a single undoable
+	 * operation.
+	 * @param name the name of the operator
+	 * @throws OperationException if there is no such operator or the operator
+	 * fails, in which case the stack is left as it was
+	 */
+	public void execute(String name) throws OperationException {
+		Operator op = registry.get(name);
+		if (op == null)
+			throw new OperationException("Unknown operation: " + name);
+
+		execute(name, op);
+	}
+
+	/**
+	 * Performs an operator as a single undoable operation. Finding the name
+	 * its statistics are recorded under takes a scan of the registry, so
+	 * callers that know the name should pass it instead.
+	 * @param op the operator to perform
+	 * @throws OperationException if the operator fails, in which case the
+	 * stack is left as it was
+	 */
+	public void execute(Operator op) throws OperationException {
+		String name = registry.nameOf(op);
+		execute(name != null ? name : op.getClass().getName(), op);
+	}
+
+	/**
+	 * Performs an operator as a single undoable operation.
+	 * @param name the name the statistics of the operator are recorded under
+	 * @param op the operator to perform
+	 * @throws OperationException if the operator fails, in which case the
+	 * stack is left as it was
+	 */
+	public void execute(String name, Operator op) throws OperationException {
+		boolean done = false;
+		stack.begin();
+		try {
+			perform(name, op, stack);
+			done = true;
+		} catch (RuntimeException err) {
+			// arithmetic errors from apfloat end up here
+			throw new OperationException(err.getMessage(), err);
+		} finally {
+			if (done)
+				stack.commit();
+			else
+				stack.rollback();
+			stack.addMarker(op instanceof EntryOperator);
+		}
+	}
+
+	/**
+	 * Evaluates an RPN script. Tokens are separated by whitespace; each token
+	 * is either the name of an operator or a number to push onto the stack.
+	 * @param script the script to evaluate
+	 * @return the value at the top of the stack afterwards, or
+	 * <code>null</code> if the stack is empty
+	 * @throws OperationException if a token is not recognized or an operator
+	 * fails
+	 */
+	public Apfloat evaluate(String script) throws OperationException {
+		String[] tokens = WHITESPACE.split(script.trim());
+
+		for (String token : tokens) {
+			if (token.length() == 0)
+				continue;
+
+			Operator op = registry.get(token);
+			if (op != null) {
+				execute(token, op);
+			} else {
+				Apfloat val;
+				try {
+					val = new Apfloat(token, stack.getPrecision());
+				} catch (NumberFormatException err) {
+					throw new OperationException(
+							"Unknown operation: " + token, err);
+				}
+				stack.push(val);
+				stack.addMarker();
+			}
+		}
+
+		return stack.empty() ? null : stack.peek().getValue();
+	}
+
+	/**
+	 * Performs an operator on a stack, without marking the end of the
+	 * operation, and records its statistics.
+	 * @param name the name of the operator
+	 * @param op the operator
+	 * @param s the stack to perform the operator on
+	 * @throws OperationException if the operator fails
+	 */
+	void perform(String name, Operator op, ComputationStack s)
+			throws OperationException {
+		stats.perform(name, op, s, this);
+	}
+
+}
@@ -0,0 +1,12 @@
+package xsznix.superrpn.engine;
+
+/**
+ * An operator that edits the text of the item at the top of the stack, such as
+ * a digit or the decimal point. A run of entry operators on the same item is
+ * undone as a single operation, so undo goes back a whole number at once.
+ * @author Xuming Zeng
+ * 
+ */
+public interface EntryOperator extends Operator {
+
+}
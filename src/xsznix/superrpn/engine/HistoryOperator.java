@@ -0,0 +1,13 @@
+package xsznix.superrpn.engine;
+
+/**
+ * An operator that works on the undo history of the computation stack rather
+ * than on its items, such as undo and redo. These operators have to be
+ * performed on the calculator's own stack, so an
+ * <code>OperationRunner</code> never moves them to its worker thread.
+ * @author Xuming Zeng
+ * 
+ */
+public interface HistoryOperator extends Operator {
+
+}
@@ -0,0 +1,163 @@
+package xsznix.superrpn.engine;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apfloat.Apfloat;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Pushes a list of numbers read from text, e.g. pasted from the clipboard or
+ * read from a file, onto the stack. The numbers may be separated by
+ * whitespace, newlines, commas or semicolons, so both plain lists and CSV
+ * files can be imported. The text is read a buffer at a time rather than
+ * split into a list of strings first.<br>
+ *
+ * Like any other operator, an import is performed as a single operation: one
+ * undo step, one update of the display, and if any number is malformed,
+ * nothing is pushed at all. Unlike the standard operators, an import holds
+ * the text it reads, so it can only be performed once; it closes the text
+ * when it is done. A file is only opened once the import is performed, so
+ * an import that is queued and then cancelled does not leave it open.
+ * @author Xuming Zeng
+ *
+ */
+public class ImportOperator implements Operator {
+
+	/** The number of characters read at a time. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The longest malformed token quoted in an error message. */
+	private static final int MAX_QUOTED = 40;
+
+	/** The text to read the numbers from, or <code>null</code>. */
+	private Reader in;
+
+	/** The file to read the numbers from, or <code>null</code>. */
+	private File file;
+
+	/** The number of values pushed by the last import. */
+	private int count;
+
+	/**
+	 * Creates a new import.
+	 * @param r the text to read the numbers from
+	 */
+	public ImportOperator(Reader r) {
+		in = r;
+	}
+
+	/**
+	 * Creates a new import from a file, which is opened when the import is
+	 * performed.
+	 * @param f the file to read the numbers from
+	 */
+	public ImportOperator(File f) {
+		file = f;
+	}
+
+	// GETTERS / SETTERS
+
+	/**
+	 * Gets the number of values pushed.
+	 * @return the number of values pushed, or zero if the import has not run
+	 */
+	public int getCount() { return count; }
+
+	/* METHODS */
+
+	public void operate(ComputationStack stack, Calculator calc)
+			throws OperationException {
+		if (file != null) {
+			try {
+				in = new FileReader(file);
+			} catch (FileNotFoundException err) {
+				throw new OperationException(
+						"Could not open " + file.getName() + ".", err);
+			}
+			file = null;
+		}
+		if (in == null)
+			throw new OperationException("The numbers were already imported.");
+
+		long precision = stack.getPrecision();
+		char[] buf = new char[BUFFER_SIZE];
+		StringBuilder token = new StringBuilder();
+		int n = 0;
+		try {
+			for (int len; (len = in.read(buf)) != -1; ) {
+				for (int i = 0; i < len; i++) {
+					char c = buf[i];
+					if (!isSeparator(c)) {
+						token.append(c);
+					} else if (token.length() > 0) {
+						push(stack, token, precision);
+						token.setLength(0);
+						n++;
+					}
+				}
+
+				// stop if the import has been cancelled
+				if (Thread.currentThread().isInterrupted())
+					throw new OperationException(
+							"The operation was cancelled.");
+			}
+			if (token.length() > 0) {
+				push(stack, token, precision);
+				n++;
+			}
+		} catch (IOException err) {
+			throw new OperationException(
+					"Could not read the numbers: " + err.getMessage(), err);
+		} finally {
+			close();
+		}
+		count = n;
+	}
+
+	/**
+	 * Parses a number and pushes it onto the stack.
+	 * @param stack the stack
+	 * @param token the text of the number
+	 * @param precision the internal precision of the stack
+	 * @throws OperationException if the text is not a number
+	 */
+	private static void push(ComputationStack stack, CharSequence token,
+			long precision) throws OperationException {
+		String str = token.toString();
+		try {
+			stack.push(new Apfloat(str, precision));
+		} catch (NumberFormatException err) {
+			if (str.length() > MAX_QUOTED)
+				str = str.substring(0, MAX_QUOTED) + "...";
+			throw new OperationException("Not a number: " + str, err);
+		}
+	}
+
+	/**
+	 * Checks whether a character separates two numbers.
+	 * @param c the character
+	 * @return <code>true</code> for whitespace, commas and semicolons
+	 */
+	private static boolean isSeparator(char c) {
+		return c == ',' || c == ';' || Character.isWhitespace(c);
+	}
+
+	/**
+	 * Closes the text, which will not be read again.
+	 */
+	private void close() {
+		try {
+			in.close();
+		} catch (IOException err) {
+			// everything has been read already
+		}
+		in = null;
+	}
+
+}
@@ -0,0 +1,285 @@
+package xsznix.superrpn.engine;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.StackSnapshot;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * Performs the operators of a calculator on a worker thread, so that a slow
+ * computation does not block the thread that submitted it.<br>
+ *
+ * Each operator runs on its own copy of a snapshot of the stack. When it
+ * finishes, its result replaces the calculator's stack in one step, followed by
+ * a single undo marker. Operators submitted while another one is running are
+ * queued and performed in order. <code>HistoryOperator</code>s are performed
+ * directly on the calculator's stack when their turn comes.<br>
+ *
+ * All methods must be called from the thread that the completion callbacks
+ * are delivered on (the event dispatch thread in the GUI).
+ * @author Xuming Zeng
+ *
+ */
+public class OperationRunner {
+
+	/**
+	 * Receives notifications from an <code>OperationRunner</code>.
+	 * @author Xuming Zeng
+	 *
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when the runner starts or stops working through its queue.
+		 * @param busy <code>true</code> if an operator is running
+		 */
+		public void busyChanged(boolean busy);
+
+		/**
+		 * Called when an operator has finished and its result, if any, has
+		 * been applied to the stack.
+		 * @param name the name of the operator
+		 * @param err the reason the operator failed, or <code>null</code> if
+		 * it succeeded
+		 */
+		public void operationDone(String name, OperationException err);
+	}
+
+	/** The worker threads, shared by all runners. */
+	private static final ExecutorService WORKERS =
+			Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "SuperRPN worker");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/** The calculator to perform operators on. */
+	private Calculator calc;
+
+	/** Delivers results back to the thread that owns the calculator. */
+	private Executor callbackExecutor;
+
+	/** Receives notifications, or <code>null</code>. */
+	private Listener listener;
+
+	/** The operators waiting to run. */
+	private LinkedList<Request> pending;
+
+	/** The operator that is running, or <code>null</code>. */
+	private Task current;
+
+	/**
+	 * Creates a new runner.
+	 * @param c the calculator to perform operators on
+	 * @param callbacks runs the completion of each operator on the thread that
+	 * owns the calculator, e.g. with <code>EventQueue.invokeLater()</code>
+	 * @param l receives notifications, or <code>null</code>
+	 */
+	public OperationRunner(Calculator c, Executor callbacks, Listener l) {
+		calc = c;
+		callbackExecutor = callbacks;
+		listener = l;
+		pending = new LinkedList<Request>();
+	}
+
+	/* METHODS */
+
+	/**
+	 * Checks whether an operator is running.
+	 * @return <code>true</code> if an operator is running
+	 */
+	public boolean isBusy() { return current != null; }
+
+	/**
+	 * Queues an operator to be performed after the ones already submitted.
+	 * @param name the name of the operator
+	 */
+	public void submit(String name) {
+		submit(name, null);
+	}
+
+	/**
+	 * Queues an operator that is not looked up by name, such as an import, to
+	 * be performed after the ones already submitted.
+	 * @param name the name the statistics of the operator are recorded under
+	 * @param op the operator, or <code>null</code> to look it up by name
+	 */
+	public void submit(String name, Operator op) {
+		pending.add(new Request(name, op));
+		if (current == null) {
+			runNext();
+			if (current != null)
+				notifyBusy(true);
+		}
+	}
+
+	/**
+	 * Cancels the running operator and every queued operator. The stack is
+	 * left as it was before the running operator started.<br>
+	 *
+	 * apfloat does not check for interruption, so a cancelled computation may
+	 * keep its worker thread busy until it finishes; its result is thrown
+	 * away. The combinatorial functions in <code>Maths</code> do stop when
+	 * interrupted.
+	 */
+	public void cancel() {
+		pending.clear();
+		if (current != null) {
+			current.future.cancel(true);
+			current = null;
+			notifyBusy(false);
+		}
+	}
+
+	/**
+	 * Starts the next queued operator. History operators and unknown names are
+	 * handled right away.
+	 */
+	private void runNext() {
+		while (!pending.isEmpty()) {
+			Request req = pending.removeFirst();
+			String name = req.name;
+			Operator op = req.op != null ? req.op :
+					calc.getRegistry().get(name);
+
+			if (op == null || op instanceof HistoryOperator) {
+				OperationException err = null;
+				try {
+					if (op == null)
+						calc.execute(name);
+					else
+						calc.execute(name, op);
+				} catch (OperationException ex) {
+					err = ex;
+				}
+				notifyDone(name, err);
+				continue;
+			}
+
+			ComputationStack stack = calc.getStack();
+			current = new Task(name, op, stack.snapshot(),
+					stack.getPrecision());
+			current.future = WORKERS.submit(current);
+			return;
+		}
+	}
+
+	/**
+	 * Applies the result of a finished operator and starts the next one.
+	 * @param t the finished operator
+	 */
+	private void finish(Task t) {
+		// the operator was cancelled
+		if (t != current)
+			return;
+		current = null;
+
+		OperationException err = t.error;
+		if (err == null) {
+			ComputationStack stack = calc.getStack();
+			if (stack.isAt(t.base)) {
+				stack.restore(t.result);
+				stack.addMarker(t.op instanceof EntryOperator);
+			} else {
+				err = new OperationException(
+						"The stack changed while the operation was running.");
+			}
+		}
+		notifyDone(t.name, err);
+
+		runNext();
+		if (current == null)
+			notifyBusy(false);
+	}
+
+	private void notifyBusy(boolean busy) {
+		if (listener != null)
+			listener.busyChanged(busy);
+	}
+
+	private void notifyDone(String name, OperationException err) {
+		if (listener != null)
+			listener.operationDone(name, err);
+	}
+
+	/**
+	 * An operator waiting to run.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class Request {
+		/** The name of the operator. */
+		private final String name;
+		/** The operator, or <code>null</code> to look it up by name. */
+		private final Operator op;
+
+		public Request(String n, Operator o) {
+			name = n;
+			op = o;
+		}
+	}
+
+	/**
+	 * An operator running on a copy of the stack.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private class Task implements Runnable {
+		/** The name of the operator. */
+		private final String name;
+		/** The operator. */
+		private final Operator op;
+		/** The state of the stack when the operator was started. */
+		private final StackSnapshot base;
+		/** The internal precision of the stack. */
+		private final long precision;
+		/** The state of the copy after the operator has finished. */
+		private StackSnapshot result;
+		/** The reason the operator failed, or <code>null</code>. */
+		private OperationException error;
+		/** Used to cancel the operator. */
+		private Future<?> future;
+
+		public Task(String n, Operator o, StackSnapshot b, long p) {
+			name = n;
+			op = o;
+			base = b;
+			precision = p;
+		}
+
+		public void run() {
+			try {
+				// the copy does not need an undo history of its own
+				ComputationStack scratch = new ComputationStack(2);
+				scratch.setPrecision(precision);
+				scratch.restore(base);
+
+				calc.perform(name, op, scratch);
+				result = scratch.snapshot();
+			} catch (OperationException err) {
+				error = err;
+			} catch (Throwable err) {
+				// errors such as running out of memory fail the operator too,
+				// rather than leaving the runner busy forever
+				String msg = err.getMessage();
+				error = new OperationException(
+						msg != null ? msg : err.toString(), err);
+			} finally {
+				callbackExecutor.execute(new Runnable() {
+					public void run() {
+						finish(Task.this);
+					}
+				});
+			}
+		}
+	}
+
+}
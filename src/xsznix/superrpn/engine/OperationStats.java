@@ -0,0 +1,303 @@
+package xsznix.superrpn.engine;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.err.OperationException;
+import xsznix.superrpn.util.LatencyHistogram;
+
+/**
+ * Records how long each operator takes, how much memory it allocates, how much
+ * garbage collection happens while it runs and how often it fails. Operations
+ * may be recorded from any thread.
+ * @author Xuming Zeng
+ *
+ */
+public class OperationStats implements OperationStatsMBean {
+
+	/** Measures the memory allocated by a thread, if the JVM supports it. */
+	private static final com.sun.management.ThreadMXBean THREADS;
+
+	/** The garbage collectors of the JVM. */
+	private static final List<GarbageCollectorMXBean> COLLECTORS =
+			ManagementFactory.getGarbageCollectorMXBeans();
+
+	static {
+		ThreadMXBean t = ManagementFactory.getThreadMXBean();
+		if (t instanceof com.sun.management.ThreadMXBean &&
+				((com.sun.management.ThreadMXBean) t)
+						.isThreadAllocatedMemorySupported()) {
+			THREADS = (com.sun.management.ThreadMXBean) t;
+			THREADS.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			THREADS = null;
+		}
+	}
+
+	/** The statistics of each operator, by name. */
+	private TreeMap<String, Entry> entries;
+
+	/**
+	 * Creates a new, empty set of statistics.
+	 */
+	public OperationStats() {
+		entries = new TreeMap<String, Entry>();
+	}
+
+	/* METHODS */
+
+	/**
+	 * Performs an operator and records its statistics.
+	 * @param name the name of the operator
+	 * @param op the operator
+	 * @param stack the stack to perform the operator on
+	 * @param calc the calculator that supplies the settings
+	 * @throws OperationException if the operator fails
+	 */
+	void perform(String name, Operator op, ComputationStack stack,
+			Calculator calc) throws OperationException {
+		long bytes = allocatedBytes();
+		long gc = gcMillis();
+		long start = System.nanoTime();
+		boolean failed = true;
+
+		try {
+			op.operate(stack, calc);
+			failed = false;
+		} finally {
+			long nanos = System.nanoTime() - start;
+			entry(name).record(nanos, allocatedBytes() - bytes,
+					gcMillis() - gc, failed);
+		}
+	}
+
+	/**
+	 * Gets the statistics of every operator performed so far.
+	 * @return the statistics, sorted by operator name
+	 */
+	public synchronized List<Summary> getSummaries() {
+		ArrayList<Summary> list = new ArrayList<Summary>(entries.size());
+		for (Entry e : entries.values())
+			list.add(e.summarize());
+		return list;
+	}
+
+	/**
+	 * Gets the statistics of one operator.
+	 * @param op the name of the operator
+	 * @return the statistics, or <code>null</code> if the operator has not
+	 * been performed
+	 */
+	public synchronized Summary getSummary(String op) {
+		Entry e = entries.get(op);
+		return e == null ? null : e.summarize();
+	}
+
+	/**
+	 * Registers these statistics with the platform MBean server, so that they
+	 * can be watched with JConsole.
+	 * @param name the object name, e.g.
+	 * <code>xsznix.superrpn:type=OperationStats</code>
+	 * @return <code>true</code> if registration succeeded
+	 */
+	public boolean registerMBean(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName(name));
+			return true;
+		} catch (JMException err) {
+			return false;
+		}
+	}
+
+	private synchronized Entry entry(String name) {
+		Entry e = entries.get(name);
+		if (e == null) {
+			e = new Entry(name);
+			entries.put(name, e);
+		}
+		return e;
+	}
+
+	/* MBEAN */
+
+	public synchronized String[] getOperators() {
+		return entries.keySet().toArray(new String[entries.size()]);
+	}
+
+	public long getTotalCount() {
+		long total = 0;
+		for (Summary s : getSummaries())
+			total += s.getCount();
+		return total;
+	}
+
+	public long getTotalErrors() {
+		long total = 0;
+		for (Summary s : getSummaries())
+			total += s.getErrors();
+		return total;
+	}
+
+	public String getReport() {
+		StringBuilder sb = new StringBuilder(String.format(
+				"%-8s %8s %6s %10s %10s %10s %10s %8s%n", "op", "count",
+				"errors", "p50 ms", "p99 ms", "max ms", "bytes/op", "gc ms"));
+		for (Summary s : getSummaries()) {
+			sb.append(String.format(
+					"%-8s %8d %6d %10.3f %10.3f %10.3f %10d %8d%n",
+					s.getName(), s.getCount(), s.getErrors(),
+					s.getP50Millis(), s.getP99Millis(), s.getMaxMillis(),
+					s.getBytesPerOp(), s.getGcMillis()));
+		}
+		return sb.toString();
+	}
+
+	public long count(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getCount();
+	}
+
+	public long errors(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getErrors();
+	}
+
+	public double p50Millis(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getP50Millis();
+	}
+
+	public double p99Millis(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getP99Millis();
+	}
+
+	public double maxMillis(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getMaxMillis();
+	}
+
+	public long bytesPerOp(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getBytesPerOp();
+	}
+
+	public long gcMillis(String op) {
+		Summary s = getSummary(op);
+		return s == null ? 0 : s.getGcMillis();
+	}
+
+	public synchronized void reset() {
+		entries.clear();
+	}
+
+	/* HELPERS */
+
+	/**
+	 * Measures the memory allocated by the current thread so far.
+	 * @return the number of bytes, or zero if the JVM cannot measure it
+	 */
+	private static long allocatedBytes() {
+		return THREADS == null ? 0 :
+				THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Measures the time spent collecting garbage so far.
+	 * @return the time in milliseconds
+	 */
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : COLLECTORS)
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	/**
+	 * The statistics of one operator.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class Entry {
+		private final String name;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private long errors;
+		private long bytes;
+		private long gcMillis;
+
+		public Entry(String n) {
+			name = n;
+		}
+
+		public synchronized void record(long nanos, long b, long gc,
+				boolean failed) {
+			latency.record(nanos);
+			bytes += Math.max(0, b);
+			gcMillis += gc;
+			if (failed)
+				errors++;
+		}
+
+		public synchronized Summary summarize() {
+			long count = latency.getCount();
+			return new Summary(name, count, errors,
+					latency.percentile(50), latency.percentile(99),
+					latency.getMax(), count == 0 ? 0 : bytes / count,
+					gcMillis);
+		}
+	}
+
+	/**
+	 * The statistics of one operator at one point in time.
+	 * @author Xuming Zeng
+	 *
+	 */
+	public static final class Summary {
+		private final String name;
+		private final long count;
+		private final long errors;
+		private final long p50;
+		private final long p99;
+		private final long max;
+		private final long bytesPerOp;
+		private final long gcMillis;
+
+		Summary(String n, long c, long err, long p50Nanos, long p99Nanos,
+				long maxNanos, long b, long gc) {
+			name = n;
+			count = c;
+			errors = err;
+			p50 = p50Nanos;
+			p99 = p99Nanos;
+			max = maxNanos;
+			bytesPerOp = b;
+			gcMillis = gc;
+		}
+
+		public String getName() { return name; }
+
+		public long getCount() { return count; }
+
+		public long getErrors() { return errors; }
+
+		public double getP50Millis() { return p50 / 1e6; }
+
+		public double getP99Millis() { return p99 / 1e6; }
+
+		public double getMaxMillis() { return max / 1e6; }
+
+		public long getBytesPerOp() { return bytesPerOp; }
+
+		public long getGcMillis() { return gcMillis; }
+	}
+
+}
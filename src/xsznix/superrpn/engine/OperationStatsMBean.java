@@ -0,0 +1,48 @@
+package xsznix.superrpn.engine;
+
+/**
+ * The management interface of <code>OperationStats</code>, for watching the
+ * performance of a calculator with JConsole or another JMX client. Durations
+ * are in milliseconds.
+ * @author Xuming Zeng
+ *
+ */
+public interface OperationStatsMBean {
+
+	/** @return the names of the operators performed so far */
+	public String[] getOperators();
+
+	/** @return the number of operations performed */
+	public long getTotalCount();
+
+	/** @return the number of operations that failed */
+	public long getTotalErrors();
+
+	/** @return a table of the statistics of every operator */
+	public String getReport();
+
+	/** @return the number of times an operator was performed */
+	public long count(String op);
+
+	/** @return the number of times an operator failed */
+	public long errors(String op);
+
+	/** @return the median duration of an operator */
+	public double p50Millis(String op);
+
+	/** @return the 99th percentile duration of an operator */
+	public double p99Millis(String op);
+
+	/** @return the longest duration of an operator */
+	public double maxMillis(String op);
+
+	/** @return the average number of bytes allocated by an operator */
+	public long bytesPerOp(String op);
+
+	/** @return the total time spent collecting garbage while an operator ran */
+	public long gcMillis(String op);
+
+	/** Forgets all statistics. */
+	public void reset();
+
+}
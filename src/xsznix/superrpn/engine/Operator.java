@@ -0,0 +1,26 @@
+package xsznix.superrpn.engine;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.err.OperationException;
+
+/**
+ * A single operation that can be performed on a computation stack. Operators
+ * are registered by name in an <code>OperatorRegistry</code> and do not hold
+ * any state of their own, so one instance can be shared between any number of
+ * calculators.
+ * @author Xuming Zeng
+ *
+ */
+public interface Operator {
+
+	/**
+	 * Performs this operation on a computation stack.
+	 * @param stack the computation stack to operate on
+	 * @param calc the calculator that supplies the settings (angle mode and
+	 * displayed precision) for this operation
+	 * @throws OperationException if the operation cannot be performed
+	 */
+	public void operate(ComputationStack stack, Calculator calc)
+			throws OperationException;
+
+}
@@ -0,0 +1,95 @@
+package xsznix.superrpn.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps operation names to the <code>Operator</code>s that implement them.
+ * @author Xuming Zeng
+ *
+ */
+public class OperatorRegistry {
+	
+	/** The shared registry containing the standard operators. */
+	private static OperatorRegistry defaultRegistry;
+	
+	/** The registered operators, by name. */
+	private HashMap<String, Operator> operators;
+	
+	/**
+	 * Creates a new, empty registry.
+	 */
+	public OperatorRegistry() {
+		operators = new HashMap<String, Operator>();
+	}
+	
+	/**
+	 * Gets the shared registry containing the standard operators. The shared
+	 * registry must not be modified; create a new registry and fill it with
+	 * <code>StandardOperators.registerAll()</code> to add operators.
+	 * @return the default registry
+	 */
+	public static synchronized OperatorRegistry getDefault() {
+		if (defaultRegistry == null) {
+			defaultRegistry = new OperatorRegistry();
+			StandardOperators.registerAll(defaultRegistry);
+		}
+		return defaultRegistry;
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Registers an operator, replacing any operator already registered under
+	 * the same name.
+	 * @param name the name of the operator
+	 * @param op the operator
+	 */
+	public void register(String name, Operator op) {
+		operators.put(name, op);
+	}
+	
+	/**
+	 * Looks up an operator.
+	 * @param name the name of the operator
+	 * @return the operator, or <code>null</code> if there is no operator
+	 * registered under that name
+	 */
+	public Operator get(String name) {
+		return operators.get(name);
+	}
+	
+	/**
+	 * Finds the name an operator is registered under.
+	 * @param op the operator
+	 * @return the name of the operator, or <code>null</code> if it is not
+	 * registered
+	 */
+	public String nameOf(Operator op) {
+		for (Map.Entry<String, Operator> e : operators.entrySet()) {
+			if (e.getValue() == op)
+				return e.getKey();
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks whether an operator is registered under a name.
+	 * @param name the name of the operator
+	 * @return <code>true</code> if the operator exists
+	 */
+	public boolean contains(String name) {
+		return operators.containsKey(name);
+	}
+	
+	/**
+	 * Gets the names of all registered operators.
+	 * @return an unmodifiable set of operator names
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(operators.keySet());
+	}
+
+}
@@ -0,0 +1,215 @@
+package xsznix.superrpn.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apfloat.Apfloat;
+
+import xsznix.superrpn.util.Constant;
+
+/**
+ * Remembers the most recent results of the unary and binary operators, so
+ * that applying an expensive function to the same value again, as happens
+ * when a constant is entered again or an operation is undone and redone, does
+ * not compute it again. Results are looked up by operator, the values and
+ * precisions of the operands and the angle mode; the least recently used
+ * result is forgotten when the cache is full. Results and operands of more
+ * than <code>Constant.RESULT_CACHE_MAX_DIGITS</code> digits are never cached,
+ * so that a few huge integers cannot fill up memory. Results may be cached
+ * from any thread.
+ * @author Xuming Zeng
+ *
+ */
+public class ResultCache implements ResultCacheMBean {
+
+	/** The cached results. */
+	private LinkedHashMap<Key, Apfloat> results;
+
+	/** The maximum number of results kept. */
+	private int capacity;
+
+	/** The number of results found in the cache. */
+	private long hits;
+
+	/** The number of results not found in the cache. */
+	private long misses;
+
+	/**
+	 * Creates a new, empty cache.
+	 * @param cap the maximum number of results kept; zero turns caching off
+	 */
+	public ResultCache(int cap) {
+		results = new LinkedHashMap<Key, Apfloat>(16, 0.75f, true) {
+			private static final long serialVersionUID =
+					4730364587329617409L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Apfloat> e) {
+				return size() > capacity;
+			}
+		};
+		setCapacity(cap);
+	}
+
+	// GETTERS / SETTERS
+
+	public synchronized int getCapacity() { return capacity; }
+
+	/**
+	 * Sets the maximum number of results kept. The least recently used
+	 * results are forgotten if there are more.
+	 * @param cap the maximum number of results; zero turns caching off
+	 */
+	public synchronized void setCapacity(int cap) {
+		if (cap < 0)
+			throw new IllegalArgumentException(
+					"Capacity must not be negative: " + cap);
+		capacity = cap;
+
+		Iterator<Key> it = results.keySet().iterator();
+		for (int n = results.size(); n > capacity; n--) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public synchronized int getSize() { return results.size(); }
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	/* METHODS */
+
+	/**
+	 * Looks up the result of an operator.
+	 * @param op the operator
+	 * @param degrees whether angles are in degrees
+	 * @param operands the operands of the operator
+	 * @return the result, or <code>null</code> if it is not cached
+	 */
+	public synchronized Apfloat get(Operator op, boolean degrees,
+			Apfloat... operands) {
+		if (capacity == 0 || !fits(operands))
+			return null;
+
+		Apfloat result = results.get(new Key(op, degrees, operands));
+		if (result != null)
+			hits++;
+		else
+			misses++;
+		return result;
+	}
+
+	/**
+	 * Caches the result of an operator.
+	 * @param op the operator
+	 * @param degrees whether angles are in degrees
+	 * @param result the result
+	 * @param operands the operands of the operator
+	 */
+	public synchronized void put(Operator op, boolean degrees, Apfloat result,
+			Apfloat... operands) {
+		if (capacity > 0 && fits(operands) && fits(result))
+			results.put(new Key(op, degrees, operands), result);
+	}
+
+	/**
+	 * Checks whether numbers are small enough to be cached.
+	 * @param values the numbers
+	 * @return <code>true</code> if none of them has more than
+	 * <code>Constant.RESULT_CACHE_MAX_DIGITS</code> digits
+	 */
+	private static boolean fits(Apfloat... values) {
+		for (Apfloat v : values) {
+			if (v.size() > Constant.RESULT_CACHE_MAX_DIGITS)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Registers this cache with the platform MBean server, so that it can be
+	 * watched and resized with JConsole.
+	 * @param name the object name, e.g.
+	 * <code>xsznix.superrpn:type=ResultCache</code>
+	 * @return <code>true</code> if registration succeeded
+	 */
+	public boolean registerMBean(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName(name));
+			return true;
+		} catch (JMException err) {
+			return false;
+		}
+	}
+
+	/**
+	 * Forgets all results and resets the hit and miss counts.
+	 */
+	public synchronized void clear() {
+		results.clear();
+		resetCounts();
+	}
+
+	/**
+	 * Resets the hit and miss counts, keeping the results.
+	 */
+	public synchronized void resetCounts() {
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Identifies the result of an operator. Apfloats are equal if their values
+	 * are, so the precisions of the operands are compared separately.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class Key {
+		private final Operator op;
+		private final boolean degrees;
+		private final Apfloat[] operands;
+		private final long[] precisions;
+		private final int hash;
+
+		public Key(Operator o, boolean deg, Apfloat[] ops) {
+			op = o;
+			degrees = deg;
+			operands = ops;
+			precisions = new long[ops.length];
+			for (int i = 0; i < ops.length; i++)
+				precisions[i] = ops[i].precision();
+
+			int h = o.hashCode() * 31 + (deg ? 1 : 0);
+			h = h * 31 + Arrays.hashCode(operands);
+			hash = h * 31 + Arrays.hashCode(precisions);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key k = (Key) obj;
+			return op == k.op && degrees == k.degrees
+					&& Arrays.equals(precisions, k.precisions)
+					&& Arrays.equals(operands, k.operands);
+		}
+	}
+
+}
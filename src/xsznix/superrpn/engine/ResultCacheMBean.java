@@ -0,0 +1,36 @@
+package xsznix.superrpn.engine;
+
+/**
+ * The management interface of <code>ResultCache</code>, for watching and
+ * resizing the result cache of a calculator with JConsole or another JMX
+ * client.
+ * @author Xuming Zeng
+ *
+ */
+public interface ResultCacheMBean {
+
+	/** @return the maximum number of results kept */
+	public int getCapacity();
+
+	/** @param cap the maximum number of results kept; zero turns caching off */
+	public void setCapacity(int cap);
+
+	/** @return the number of results kept */
+	public int getSize();
+
+	/** @return the number of results found in the cache */
+	public long getHits();
+
+	/** @return the number of results not found in the cache */
+	public long getMisses();
+
+	/** @return the fraction of lookups that found their result */
+	public double getHitRate();
+
+	/** Forgets all results and statistics. */
+	public void clear();
+
+	/** Resets the hit and miss counts, keeping the results. */
+	public void resetCounts();
+
+}
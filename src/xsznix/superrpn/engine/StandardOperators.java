@@ -0,0 +1,731 @@
+package xsznix.superrpn.engine;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+import org.apfloat.ApintMath;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.err.OperationException;
+import xsznix.superrpn.util.Maths;
+
+/**
+ * The standard operators of SuperRPN. These are the operators bound to the
+ * keys of the <code>OperatorKeyboard</code>.
+ * @author Xuming Zeng
+ *
+ */
+public final class StandardOperators {
+
+	private StandardOperators() {}
+
+	/**
+	 * Registers all of the standard operators.
+	 * @param reg the registry to add the operators to
+	 */
+	public static void registerAll(OperatorRegistry reg) {
+		registerEntry(reg);
+		registerStack(reg);
+		registerArithmetic(reg);
+		registerTrig(reg);
+		registerExponential(reg);
+		registerInteger(reg);
+		registerGamma(reg);
+		registerMemory(reg);
+		registerConstants(reg);
+	}
+
+	/**
+	 * Registers the operators that edit the text of the item at the top of
+	 * the stack.
+	 */
+	private static void registerEntry(OperatorRegistry reg) {
+		for (char c = '0'; c <= '9'; c++)
+			reg.register("digit" + c, new DigitOperator(c));
+
+		// negate
+		reg.register("neg", new EntryOperator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) {
+					ComputationStackItem item = stack.pop();
+					String val = item.getValStr(calc.getPrecision());
+					int indexOfE = val.indexOf('e');
+
+					// invert value
+					if (indexOfE == -1) {
+						if (val.charAt(0) == '-')
+							stack.push(val.substring(1, val.length()));
+						else
+							stack.push("-" + val);
+					}
+					// invert exponent
+					else if (val.charAt(indexOfE + 1) == '-') {
+						stack.push(val.substring(0, indexOfE) + "e"
+								+ val.substring(indexOfE + 2, val.length()));
+					} else {
+						stack.push(val.substring(0, indexOfE) + "e-"
+								+ val.substring(indexOfE + 1, val.length()));
+					}
+				}
+			}
+		});
+
+		// decimal point
+		reg.register("point", new EntryOperator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.replaceTop(
+							stack.peek().append('.', calc.getPrecision()));
+				else
+					stack.push("0.");
+			}
+		});
+
+		// EE
+		reg.register("ee", new EntryOperator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				String val = stack.pop().getValStr(calc.getPrecision());
+				int posOfE = val.indexOf('e');
+				if (posOfE == -1) {
+					val += 'e';
+				} else {
+					val = val.substring(0, posOfE);
+				}
+				stack.push(val);
+			}
+		});
+
+		// backspace
+		reg.register("bksp", new EntryOperator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.replaceTop(
+							stack.peek().backspace(calc.getPrecision()));
+			}
+		});
+
+		// enter
+		reg.register("enter", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				stack.push("0");
+			}
+		});
+	}
+
+	/**
+	 * Registers the operators that rearrange the stack or its history.
+	 */
+	private static void registerStack(OperatorRegistry reg) {
+		reg.register("swap", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (stack.height() >= 2) {
+					ComputationStackItem item1 = stack.pop();
+					ComputationStackItem item2 = stack.pop();
+
+					stack.push(item1);
+					stack.push(item2);
+				}
+			}
+		});
+
+		reg.register("drop", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) stack.pop();
+			}
+		});
+
+		reg.register("clear", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				while (!stack.empty()) stack.pop();
+				stack.push("0");
+			}
+		});
+
+		reg.register("undo", new HistoryOperator() {
+			public void operate(ComputationStack stack, Calculator calc)
+					throws OperationException {
+				stack.undo();
+			}
+		});
+
+		reg.register("redo", new HistoryOperator() {
+			public void operate(ComputationStack stack, Calculator calc)
+					throws OperationException {
+				stack.redo();
+			}
+		});
+
+		reg.register("degrad", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				calc.setDegreesMode(!calc.isDegreesMode());
+			}
+		});
+	}
+
+	/**
+	 * Registers the arithmetic operators.
+	 */
+	private static void registerArithmetic(OperatorRegistry reg) {
+		reg.register("+", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return x.add(y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return x + y;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("-", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return x.subtract(y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return x - y;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("*", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return x.multiply(y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return x * y;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("/", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return x.divide(y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return x / y;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("%", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return x.mod(y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return x % y;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("inv", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.inverseRoot(x, 1L);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return 1.0 / x;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("sq", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.pow(x, 2L);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return x * x;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("cube", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.pow(x, 3L);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return x * x * x;
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("sqrt", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.sqrt(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.sqrt(x);
+			}
+		});
+
+		reg.register("invsqrt", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.inverseRoot(x, 2L);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return 1.0 / Math.sqrt(x);
+			}
+		});
+
+		reg.register("cbrt", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.cbrt(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.cbrt(x);
+			}
+		});
+	}
+
+	/**
+	 * Registers the trigonometric and hyperbolic operators.
+	 */
+	private static void registerTrig(OperatorRegistry reg) {
+		reg.register("sin", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.sin(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.sin(toRadians(x, calc));
+			}
+		});
+
+		reg.register("cos", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.cos(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.cos(toRadians(x, calc));
+			}
+		});
+
+		reg.register("tan", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.tan(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.tan(toRadians(x, calc));
+			}
+		});
+
+		reg.register("sinh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.sinh(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.sinh(toRadians(x, calc));
+			}
+		});
+
+		reg.register("cosh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.cosh(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.cosh(toRadians(x, calc));
+			}
+		});
+
+		reg.register("tanh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.tanh(toRadians(x, calc));
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.tanh(toRadians(x, calc));
+			}
+		});
+
+		reg.register("asin", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.asin(x), calc);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return fromRadians(Math.asin(x), calc);
+			}
+		});
+
+		reg.register("acos", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.acos(x), calc);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return fromRadians(Math.acos(x), calc);
+			}
+		});
+
+		reg.register("atan", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.atan(x), calc);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return fromRadians(Math.atan(x), calc);
+			}
+		});
+
+		reg.register("asinh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.asinh(x), calc);
+			}
+		});
+
+		reg.register("acosh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.acosh(x), calc);
+			}
+		});
+
+		reg.register("atanh", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return fromRadians(ApfloatMath.atanh(x), calc);
+			}
+		});
+
+		reg.register("atan2", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return fromRadians(ApfloatMath.atan2(x, y), calc);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				// the angle of the origin is an error
+				if (x == 0.0 && y == 0.0)
+					return Double.NaN;
+				return fromRadians(Math.atan2(x, y), calc);
+			}
+		});
+	}
+
+	/**
+	 * Registers the exponential and logarithmic operators.
+	 */
+	private static void registerExponential(OperatorRegistry reg) {
+		reg.register("exp", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.exp(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.exp(x);
+			}
+		});
+
+		reg.register("exp2", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return Maths.exp2(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.pow(2.0, x);
+			}
+		});
+
+		reg.register("exp10", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return Maths.exp10(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.pow(10.0, x);
+			}
+		});
+
+		reg.register("pow", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return ApfloatMath.pow(x, y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return pow(x, y);
+			}
+		});
+
+		reg.register("root", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return ApfloatMath.pow(x, ApfloatMath.inverseRoot(y, 1L));
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return pow(x, 1.0 / y);
+			}
+		});
+
+		reg.register("ln", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return ApfloatMath.log(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.log(x);
+			}
+		});
+
+		reg.register("log", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc) {
+				return Maths.log10(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Math.log10(x);
+			}
+		});
+
+		reg.register("logy", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return Maths.log(x, y);
+			}
+
+			protected double compute(double x, double y, Calculator calc) {
+				return Math.log(x) / Math.log(y);
+			}
+		});
+	}
+
+	/**
+	 * Registers the integer operators. The operands are truncated to integers.
+	 */
+	private static void registerInteger(OperatorRegistry reg) {
+		reg.register("lcm", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return ApintMath.lcm(y.truncate(), x.truncate());
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("gcd", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc) {
+				return ApintMath.gcd(y.truncate(), x.truncate());
+			}
+
+			protected boolean isCached() {
+				return false;
+			}
+		});
+
+		reg.register("ncr", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc)
+					throws OperationException {
+				return Maths.nCr(x.truncate(), y.truncate());
+			}
+		});
+
+		reg.register("npr", new BinaryOperator() {
+			protected Apfloat compute(Apfloat x, Apfloat y, Calculator calc)
+					throws OperationException {
+				return Maths.nPr(x.truncate(), y.truncate());
+			}
+		});
+	}
+
+	/**
+	 * Registers the factorial and the gamma function.
+	 */
+	private static void registerGamma(OperatorRegistry reg) {
+		reg.register("fact", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc)
+					throws OperationException {
+				return Maths.factorial(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Maths.factorial(x);
+			}
+
+			protected boolean isCached() {
+				// Maths keeps its own cache of recent factorials
+				return false;
+			}
+		});
+
+		reg.register("gamma", new UnaryOperator() {
+			protected Apfloat compute(Apfloat x, Calculator calc)
+					throws OperationException {
+				return Maths.gamma(x);
+			}
+
+			protected double compute(double x, Calculator calc) {
+				return Maths.gamma(x);
+			}
+		});
+	}
+
+	/**
+	 * Registers the memory register operators.
+	 */
+	private static void registerMemory(OperatorRegistry reg) {
+		reg.register("m1c", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				stack.setMem1(Apfloat.ZERO);
+			}
+		});
+
+		reg.register("m2c", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				stack.setMem2(Apfloat.ZERO);
+			}
+		});
+
+		reg.register("m1+", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.setMem1(stack.getMem1().add(stack.peek().getValue()));
+			}
+		});
+
+		reg.register("m2+", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.setMem2(stack.getMem2().add(stack.peek().getValue()));
+			}
+		});
+
+		reg.register("m1-", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.setMem1(
+							stack.getMem1().subtract(stack.peek().getValue()));
+			}
+		});
+
+		reg.register("m2-", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty())
+					stack.setMem2(
+							stack.getMem2().subtract(stack.peek().getValue()));
+			}
+		});
+
+		reg.register("m1r", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) stack.pop();
+				stack.push(stack.getMem1());
+			}
+		});
+
+		reg.register("m2r", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) stack.pop();
+				stack.push(stack.getMem2());
+			}
+		});
+	}
+
+	/**
+	 * Registers the operators that replace the top of the stack with a
+	 * constant.
+	 */
+	private static void registerConstants(OperatorRegistry reg) {
+		reg.register("pi", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) stack.pop();
+				stack.push(Maths.pi(stack.getPrecision()));
+			}
+		});
+
+		reg.register("e", new Operator() {
+			public void operate(ComputationStack stack, Calculator calc) {
+				if (!stack.empty()) stack.pop();
+				stack.push(Maths.e(stack.getPrecision()));
+			}
+		});
+	}
+
+	/* HELPERS */
+
+	/** Converts an angle entered by the user to radians. */
+	private static Apfloat toRadians(Apfloat x, Calculator calc) {
+		return calc.isDegreesMode() ? Maths.degToRad(x) : x;
+	}
+
+	/** Converts an angle in radians to the unit the user is working in. */
+	private static Apfloat fromRadians(Apfloat x, Calculator calc) {
+		return calc.isDegreesMode() ? Maths.radToDeg(x) : x;
+	}
+
+	/** Converts an angle entered by the user to radians. */
+	private static double toRadians(double x, Calculator calc) {
+		return calc.isDegreesMode() ? Math.toRadians(x) : x;
+	}
+
+	/** Converts an angle in radians to the unit the user is working in. */
+	private static double fromRadians(double x, Calculator calc) {
+		return calc.isDegreesMode() ? Math.toDegrees(x) : x;
+	}
+
+	/**
+	 * Raises a double to a power, giving up on the cases that are errors for
+	 * floats but not for <code>Math.pow()</code>.
+	 * @return <code>x</code> to the power of <code>y</code>, or
+	 * <code>NaN</code>
+	 */
+	private static double pow(double x, double y) {
+		if (x < 0.0 || (x == 0.0 && y == 0.0))
+			return Double.NaN;
+		return Math.pow(x, y);
+	}
+
+	/**
+	 * Appends a digit to the item at the top of the stack.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class DigitOperator implements EntryOperator {
+		/** The digit to append. */
+		private char digit;
+
+		public DigitOperator(char d) {
+			digit = d;
+		}
+
+		public void operate(ComputationStack stack, Calculator calc) {
+			if (!stack.empty())
+				stack.replaceTop(
+						stack.peek().append(digit, calc.getPrecision()));
+			else
+				stack.push(String.valueOf(digit));
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package xsznix.superrpn.engine;
+
+import org.apfloat.Apfloat;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.err.OperationException;
+import xsznix.superrpn.util.Maths;
+
+/**
+ * An operator that replaces the item at the top of the stack with a function
+ * of its value. Nothing is done if the stack is empty.<br>
+ *
+ * When the stack is precise to at most <code>Constant.DOUBLE_PRECISION</code>
+ * digits, the double version of <code>compute()</code> is tried first, and the
+ * float version is only used if it gives up or the result overflows. Float
+ * results are cached unless <code>isCached()</code> says otherwise.
+ * @author Xuming Zeng
+ *
+ */
+public abstract class UnaryOperator implements Operator {
+
+	/**
+	 * Computes the result of this operator.
+	 * @param x the value of the item at the top of the stack
+	 * @param calc the calculator that supplies the settings for this operation
+	 * @return the value to push in place of <code>x</code>
+	 * @throws OperationException if the operation cannot be performed
+	 */
+	protected abstract Apfloat compute(Apfloat x, Calculator calc)
+			throws OperationException;
+	
+	/**
+	 * Computes the result of this operator with doubles. This is used instead
+	 * of the float version when the stack is imprecise enough; operators that
+	 * do not override it are always computed with floats.
+	 * @param x the value of the item at the top of the stack
+	 * @param calc the calculator that supplies the settings for this operation
+	 * @return the value to push in place of <code>x</code>, or a value that
+	 * does not fit a double (such as <code>NaN</code>) to compute it with
+	 * floats instead
+	 */
+	protected double compute(double x, Calculator calc) {
+		return Double.NaN;
+	}
+	
+	/**
+	 * Checks whether the float results of this operator are kept in the
+	 * calculator's <code>ResultCache</code>. Operators that are cheaper than
+	 * looking up their operands, such as squaring, override this to skip
+	 * the cache.
+	 * @return <code>true</code> if results are cached
+	 */
+	protected boolean isCached() {
+		return true;
+	}
+	
+	public void operate(ComputationStack stack, Calculator calc)
+			throws OperationException {
+		if (stack.empty())
+			return;
+		
+		ComputationStackItem x = stack.pop();
+		
+		if (stack.usesDoubles()) {
+			double dx = x.getDouble();
+			if (!Double.isNaN(dx)) {
+				double result = compute(dx, calc);
+				// a zero result from nonzero operands may have underflowed
+				if (Maths.fitsDouble(result) && (result != 0.0 || dx == 0.0)) {
+					stack.push(result);
+					return;
+				}
+			}
+		}
+		
+		Apfloat vx = x.getValue();
+		if (!isCached()) {
+			stack.push(compute(vx, calc));
+			return;
+		}
+		
+		ResultCache cache = calc.getResultCache();
+		boolean degrees = calc.isDegreesMode();
+		Apfloat result = cache.get(this, degrees, vx);
+		if (result == null) {
+			result = compute(vx, calc);
+			cache.put(this, degrees, result, vx);
+		}
+		stack.push(result);
+	}
+
+}
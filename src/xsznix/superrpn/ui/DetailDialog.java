@@ -0,0 +1,190 @@
+package xsznix.superrpn.ui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+
+import xsznix.superrpn.compstack.ComputationStackItem;
+
+/**
+ * A window showing every digit of a stack item. The digits are written out
+ * in the background and appended to the text area a chunk at a time, so that
+ * a value of millions of digits neither freezes the GUI nor has to be held as
+ * one string before any of it is shown.
+ * @author Xuming Zeng
+ *
+ */
+public class DetailDialog extends JDialog {
+
+	private static final long serialVersionUID = -6097531276463829470L;
+
+	/** The number of characters appended to the text area at a time. */
+	private static final int CHUNK = 8192;
+
+	/** Shows the digits. */
+	private JTextArea text;
+
+	/** Shows how many characters have been written so far. */
+	private JLabel lengthLabel;
+
+	/** Writes out the digits, or <code>null</code> if none are shown. */
+	private Loader loader;
+
+	/**
+	 * Creates a new detail window.
+	 * @param par the window that owns this one
+	 */
+	public DetailDialog(MainFrame par) {
+		super(par, "Full value");
+
+		text = new JTextArea();
+		text.setEditable(false);
+		text.setLineWrap(true);
+		text.setFont(new Font("Courier New", Font.PLAIN, 12));
+		add(new JScrollPane(text), BorderLayout.CENTER);
+
+		// buttons
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		lengthLabel = new JLabel();
+		buttons.add(lengthLabel);
+		JButton close = new JButton("Close");
+		close.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setVisible(false);
+			}
+		});
+		buttons.add(close);
+		add(buttons, BorderLayout.SOUTH);
+
+		// stop writing digits nobody will see
+		addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentHidden(ComponentEvent e) {
+				stop();
+			}
+		});
+
+		setSize(480, 320);
+		setLocationRelativeTo(par);
+	}
+
+	/**
+	 * Starts showing the digits of a stack item, in place of any shown
+	 * before.
+	 * @param item the stack item to show
+	 */
+	public void showItem(ComputationStackItem item) {
+		stop();
+		text.setText("");
+		lengthLabel.setText("");
+		loader = new Loader(item);
+		loader.execute();
+	}
+
+	/**
+	 * Stops writing out digits, keeping the ones already shown.
+	 */
+	private void stop() {
+		if (loader != null)
+			loader.cancel(false);
+		loader = null;
+	}
+
+	/**
+	 * Writes out the digits of a stack item in the background and appends
+	 * them to the text area on the event dispatch thread.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private class Loader extends SwingWorker<Void, String> {
+		private final ComputationStackItem item;
+
+		/** The number of characters appended so far. */
+		private long length;
+
+		public Loader(ComputationStackItem it) {
+			item = it;
+		}
+
+		@Override
+		protected Void doInBackground() throws IOException {
+			ChunkWriter out = new ChunkWriter();
+			item.writeTo(out);
+			out.flush();
+			return null;
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (isCancelled())
+				return;
+			for (String chunk : chunks) {
+				text.append(chunk);
+				length += chunk.length();
+			}
+			lengthLabel.setText(length + " characters");
+		}
+
+		@Override
+		protected void done() {
+			if (!isCancelled())
+				text.setCaretPosition(0);
+		}
+
+		/**
+		 * Gathers characters into chunks and publishes each one that fills
+		 * up. Fails once the loader is cancelled, which stops the item from
+		 * writing any further.
+		 * @author Xuming Zeng
+		 *
+		 */
+		private class ChunkWriter extends Writer {
+			private final StringBuilder chunk = new StringBuilder(CHUNK);
+
+			@Override
+			public void write(char[] cbuf, int off, int len)
+					throws IOException {
+				while (len > 0) {
+					if (isCancelled())
+						throw new InterruptedIOException();
+					int n = Math.min(len, CHUNK - chunk.length());
+					chunk.append(cbuf, off, n);
+					off += n;
+					len -= n;
+					if (chunk.length() == CHUNK)
+						flush();
+				}
+			}
+
+			@Override
+			public void flush() {
+				if (chunk.length() > 0) {
+					publish(chunk.toString());
+					chunk.setLength(0);
+				}
+			}
+
+			@Override
+			public void close() {
+				flush();
+			}
+		}
+	}
+
+}
@@ -1,16 +1,35 @@
 package xsznix.superrpn.ui;
 
+import java.awt.Cursor;
 import java.awt.EventQueue;
 import java.awt.GridLayout;
+import java.awt.Toolkit;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.Executor;
 
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.border.EmptyBorder;
 
 
 import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.compstack.PersistentStack;
+import xsznix.superrpn.engine.Calculator;
+import xsznix.superrpn.engine.ImportOperator;
+import xsznix.superrpn.engine.OperationRunner;
+import xsznix.superrpn.engine.Operator;
+import xsznix.superrpn.err.OperationException;
 import xsznix.superrpn.ui.elem.OperatorKeyboard;
 import xsznix.superrpn.ui.elem.PrefBar;
 import xsznix.superrpn.ui.elem.StackView;
@@ -21,7 +40,8 @@ import xsznix.superrpn.util.Constant;
  * @author Xuming Zeng
  *
  */
-public class MainFrame extends JFrame implements KeyListener {
+public class MainFrame extends JFrame
+		implements KeyListener, OperationRunner.Listener {
 
 	private static final long serialVersionUID = -4184463015449743888L;
 	
@@ -29,17 +49,33 @@ public class MainFrame extends JFrame implements KeyListener {
 	
 	private PrefBar prefBar;
 	
-	private ComputationStack stack;
+	/** Performs the operations and holds the computation stack. */
+	private Calculator calc;
+	
+	/** Performs operations off the event dispatch thread. */
+	private OperationRunner runner;
+	
+	/** If true, operations are performed by <code>runner</code>. */
+	private boolean async;
 	
 	private StackView stackView;
 	
 	private OperatorKeyboard keyboard;
 	
-	/** The displayed precision. */
-	private int precision;
+	/** Logs the events that keep the event dispatch thread busy too long. */
+	private StallDetector stallDetector;
+	
+	/** Updates the display at most once a frame. */
+	private RefreshScheduler refreshScheduler;
+	
+	/** Shows the operator statistics, or <code>null</code> until needed. */
+	private StatsDialog statsDialog;
+	
+	/** Shows the full value of an item, or <code>null</code> until needed. */
+	private DetailDialog detailDialog;
 	
-	/** If true, trigonometric functions are evaluated in degrees. */
-	private boolean degrees;
+	/** Chooses files to import, or <code>null</code> until needed. */
+	private JFileChooser importChooser;
 
 	/**
 	 * Launch the application.
@@ -62,13 +98,24 @@ public class MainFrame extends JFrame implements KeyListener {
 	 * Create the frame.
 	 */
 	public MainFrame() {
-		// initialize the stack
-		stack = new ComputationStack();
-		stack.push("0");
+		// initialize the calculator
+		calc = new Calculator();
+		calc.getStack().push("0");
+		calc.getStats().registerMBean("xsznix.superrpn:type=OperationStats");
+		calc.getResultCache().registerMBean("xsznix.superrpn:type=ResultCache");
 		
-		// other variables
-		precision = Constant.INIT_DISP_PRECISION;
-		degrees = false;
+		// watch for operations that freeze the GUI
+		stallDetector = new StallDetector(calc);
+		stallDetector.install();
+		
+		// run operations in the background, delivering results on the EDT
+		runner = new OperationRunner(calc, new Executor() {
+			public void execute(Runnable r) {
+				EventQueue.invokeLater(r);
+			}
+		}, this);
+		async = true;
+		refreshScheduler = new RefreshScheduler(this);
 		
 		// window options
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -98,29 +145,222 @@ public class MainFrame extends JFrame implements KeyListener {
 	
 	// GETTERS / SETTERS
 	
-	public ComputationStack getCompStack() { return stack; }
+	public Calculator getCalculator() { return calc; }
+	
+	public ComputationStack getCompStack() { return calc.getStack(); }
 	
 	public StackView getStackView() { return stackView; }
 	
-	public int getPrecision() { return precision; }
+	public StallDetector getStallDetector() { return stallDetector; }
+	
+	public int getPrecision() { return calc.getPrecision(); }
 	
-	public void setPrecision(int p) { precision = p; stackView.update(); }
+	public void setPrecision(int p) { calc.setPrecision(p); stackView.refresh(); }
 	
-	public boolean isDegreesMode() { return degrees; }
+	public boolean isDegreesMode() { return calc.isDegreesMode(); }
 	
 	public void setDegreesMode(boolean deg) {
-		degrees = deg;
+		calc.setDegreesMode(deg);
+		prefBar.updateDegreesModeDisplay();
+	}
+	
+	public boolean isAsyncMode() { return async; }
+	
+	public void setAsyncMode(boolean a) { async = a; }
+	
+	/**
+	 * Checks whether an operation is running in the background.
+	 * @return <code>true</code> if the display does not yet show the result of
+	 * every operation performed
+	 */
+	public boolean isBusy() { return runner.isBusy(); }
+	
+	public boolean isFastMode() { return calc.getStack().usesDoubles(); }
+	
+	/**
+	 * Switches between computing with doubles and with full-precision floats.
+	 * Only new results are affected.
+	 * @param fast <code>true</code> to compute with doubles
+	 */
+	public void setFastMode(boolean fast) {
+		calc.getStack().setPrecision(
+				fast ? Constant.DOUBLE_PRECISION : Constant.PRECISION);
+	}
+	
+	// METHODS
+	
+	/**
+	 * Performs an operator, either right away or in the background depending
+	 * on the asynchronous mode, and updates the display once it is done.
+	 * @param name the name of the operator
+	 */
+	public void perform(String name) {
+		perform(name, null);
+	}
+	
+	/**
+	 * Performs an operator that is not looked up by name, either right away
+	 * or in the background depending on the asynchronous mode, and updates
+	 * the display once it is done.
+	 * @param name the name of the operator
+	 * @param op the operator, or <code>null</code> to look it up by name
+	 */
+	public void perform(String name, Operator op) {
+		stallDetector.setOperation(name);
+		if (async) {
+			runner.submit(name, op);
+			return;
+		}
+		
+		try {
+			if (op == null)
+				calc.execute(name);
+			else
+				calc.execute(name, op);
+		} catch (OperationException err) {
+			showError(err);
+		}
+		refreshScheduler.request();
+	}
+	
+	/**
+	 * Shows an error to the user.
+	 * @param err the error to show
+	 */
+	public void showError(OperationException err) {
+		// show error to user
+		JOptionPane.showMessageDialog(this,
+		    err.getMessage(),
+		    "Error",
+		    JOptionPane.ERROR_MESSAGE);
+		
+		// print error to console
+		err.printStackTrace();
+	}
+	
+	/**
+	 * Shows the statistics of the operators performed so far.
+	 */
+	public void showStats() {
+		if (statsDialog == null)
+			statsDialog = new StatsDialog(this, calc.getStats(),
+					calc.getResultCache(), refreshScheduler.getLatency());
+		else
+			statsDialog.refresh();
+		statsDialog.setVisible(true);
+	}
+	
+	/**
+	 * Copies every digit of the item at the top of the stack to the system
+	 * clipboard.
+	 */
+	public void copyTop() {
+		PersistentStack items = calc.getStack().snapshot().getItems();
+		if (items.empty())
+			return;
+		ComputationStackItem item = items.peek();
+		
+		StringWriter out = new StringWriter();
+		try {
+			item.writeTo(out);
+		} catch (IOException err) {
+			// a string writer does not throw
+			throw new IllegalStateException(err);
+		}
+		StringSelection sel = new StringSelection(out.toString());
+		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(sel,
+				sel);
+	}
+	
+	/**
+	 * Pushes the numbers in the text on the system clipboard onto the stack,
+	 * as a single operation.
+	 */
+	public void pasteNumbers() {
+		String text;
+		try {
+			Transferable t = Toolkit.getDefaultToolkit().getSystemClipboard()
+					.getContents(this);
+			if (t == null || !t.isDataFlavorSupported(DataFlavor.stringFlavor))
+				return;
+			text = (String) t.getTransferData(DataFlavor.stringFlavor);
+		} catch (UnsupportedFlavorException err) {
+			return;
+		} catch (IOException err) {
+			showError(new OperationException(
+					"Could not paste: " + err.getMessage(), err));
+			return;
+		}
+		perform("paste", new ImportOperator(new StringReader(text)));
+	}
+	
+	/**
+	 * Asks for a file and pushes the numbers in it onto the stack, as a single
+	 * operation. The file is read in the background in asynchronous mode.
+	 */
+	public void importNumbers() {
+		if (importChooser == null)
+			importChooser = new JFileChooser();
+		if (importChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+			return;
+		
+		perform("import", new ImportOperator(importChooser.getSelectedFile()));
+	}
+	
+	/**
+	 * Shows every digit of the item at the top of the stack in a window of
+	 * its own.
+	 */
+	public void showTopDetail() {
+		PersistentStack items = calc.getStack().snapshot().getItems();
+		if (items.empty())
+			return;
+		ComputationStackItem item = items.peek();
+		
+		if (detailDialog == null)
+			detailDialog = new DetailDialog(this);
+		detailDialog.showItem(item);
+		detailDialog.setVisible(true);
+	}
+	
+	/**
+	 * Updates the stack view and the preference bar to reflect the state of
+	 * the calculator after an operation. Operations leave this to the
+	 * refresh scheduler, which calls it at most once a frame.
+	 */
+	public void update() {
+		stackView.update();
 		prefBar.updateDegreesModeDisplay();
 	}
 	
 	// EVENT HANDLERS
 	
+	@Override
+	public void busyChanged(boolean busy) {
+		prefBar.setBusy(busy);
+		setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR)
+				: Cursor.getDefaultCursor());
+	}
+	
+	@Override
+	public void operationDone(String name, OperationException err) {
+		stallDetector.setOperation(name);
+		if (err != null)
+			showError(err);
+		refreshScheduler.request();
+	}
+	
 	@Override
 	public void keyPressed(KeyEvent e) {
 		if (e.getKeyCode() == KeyEvent.VK_SHIFT)
 			keyboard.setAlt(true);
-		else
-			keyboard.keyPressed(e);
+		else if (e.getKeyCode() == KeyEvent.VK_ESCAPE)
+			runner.cancel();
+		else if (!e.isControlDown() && !e.isMetaDown()) {
+			// leave shortcuts to the menus
+			if (keyboard.keyPressed(e))
+				refreshScheduler.keyPressed(e.getWhen());
+		}
 	}
 
 	@Override
@@ -0,0 +1,125 @@
+package xsznix.superrpn.ui;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+import xsznix.superrpn.util.Constant;
+import xsznix.superrpn.util.LatencyHistogram;
+
+/**
+ * Coalesces the updates of the main window. Asking for an update only
+ * schedules one, at least <code>Constant.FRAME_INTERVAL</code> milliseconds
+ * after the last, and the update is queued behind the events already waiting,
+ * so keys typed quickly or repeated by holding them down are all performed
+ * back to back before the display is updated once.<br>
+ *
+ * It also measures the time from each key press to the repaint that shows
+ * its result, starting from the time stamp of the key event so that time
+ * spent waiting behind other events is included. The time stamps are only
+ * precise to the millisecond. A key that is still waiting for its operation
+ * to finish when the display is updated is counted at the first update after
+ * the operations have all finished.<br>
+ *
+ * Must only be used on the event dispatch thread.
+ * @author Xuming Zeng
+ *
+ */
+public class RefreshScheduler implements ActionListener {
+
+	/** The window to update. */
+	private MainFrame frame;
+
+	/** Fires the scheduled update. */
+	private Timer timer;
+
+	/** The time of the last update, in nanoseconds. */
+	private long lastRefresh;
+
+	/**
+	 * The time of the oldest key press not yet shown, in milliseconds since
+	 * the epoch, or -1.
+	 */
+	private long inputTime;
+
+	/** The times from key press to repaint. */
+	private LatencyHistogram latency;
+
+	/**
+	 * Creates a new scheduler.
+	 * @param f the window to update
+	 */
+	public RefreshScheduler(MainFrame f) {
+		frame = f;
+		timer = new Timer(Constant.FRAME_INTERVAL, this);
+		timer.setRepeats(false);
+		lastRefresh = System.nanoTime() - Constant.FRAME_INTERVAL * 1000000L;
+		inputTime = -1;
+		latency = new LatencyHistogram();
+	}
+
+	// GETTERS / SETTERS
+
+	/**
+	 * Gets the times from key press to repaint measured so far.
+	 * @return the histogram of latencies
+	 */
+	public LatencyHistogram getLatency() { return latency; }
+
+	/* METHODS */
+
+	/**
+	 * Notes that a key has been pressed, to be counted once its result has
+	 * been painted, and schedules an update in case the key changed nothing
+	 * but the keyboard.
+	 * @param when the time the key was pressed, from
+	 * <code>KeyEvent.getWhen()</code>, so that the time the event waited in
+	 * the event queue is counted too
+	 */
+	public void keyPressed(long when) {
+		if (inputTime == -1)
+			inputTime = when;
+		request();
+	}
+
+	/**
+	 * Schedules an update of the window, unless one is already scheduled.
+	 */
+	public void request() {
+		if (timer.isRunning())
+			return;
+
+		long sinceLast = (System.nanoTime() - lastRefresh) / 1000000L;
+		timer.setInitialDelay((int) Math.max(0,
+				Constant.FRAME_INTERVAL - sinceLast));
+		timer.start();
+	}
+
+	/**
+	 * Performs the scheduled update.
+	 */
+	public void actionPerformed(ActionEvent e) {
+		lastRefresh = System.nanoTime();
+		frame.update();
+		if (frame.isBusy())
+			return;
+
+		final long start = inputTime;
+		inputTime = -1;
+
+		// queued behind the repaint that the update has just asked for
+		EventQueue.invokeLater(new Runnable() {
+			public void run() {
+				// the operators are done and shown, so later stalls are
+				// not theirs
+				frame.getStallDetector().setOperation(null);
+				if (start != -1)
+					latency.record((System.currentTimeMillis() - start)
+							* 1000000L);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,247 @@
+package xsznix.superrpn.ui;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import xsznix.superrpn.compstack.ComputationStack;
+import xsznix.superrpn.engine.Calculator;
+import xsznix.superrpn.util.Constant;
+
+/**
+ * Watches the event dispatch thread for events that take too long to handle.
+ * A watchdog thread samples the stack of the event dispatch thread once an
+ * event has taken longer than the threshold and logs the stall right away,
+ * along with the operator being performed, the height and precision of the
+ * stack and the sample, so that a hang that never ends is logged too. When
+ * the event is done, the total time it took is logged.<br>
+ *
+ * Stalls are logged to a rolling set of files in the user's home directory,
+ * <code>superrpn-stall.0.log</code> being the newest. The threshold in
+ * milliseconds can be set with the <code>superrpn.stallThreshold</code>
+ * system property.
+ * @author Xuming Zeng
+ *
+ */
+public class StallDetector extends EventQueue {
+
+	/** Receives the stall reports. */
+	private static final Logger LOG =
+			Logger.getLogger("xsznix.superrpn.stall");
+
+	/** The calculator whose state is logged. */
+	private Calculator calc;
+
+	/** The time an event must take to be logged, in nanoseconds. */
+	private long threshold;
+
+	/** The event being dispatched, or <code>null</code>. */
+	private volatile Dispatch current;
+
+	/** The operator being performed, or <code>null</code>. */
+	private volatile String operation;
+
+	/** Samples the event dispatch thread. */
+	private Thread watchdog;
+
+	/**
+	 * Creates a new stall detector with the threshold given by the
+	 * <code>superrpn.stallThreshold</code> system property.
+	 * @param c the calculator whose state is logged with each stall
+	 */
+	public StallDetector(Calculator c) {
+		this(c, Long.getLong("superrpn.stallThreshold",
+				Constant.STALL_THRESHOLD));
+	}
+
+	/**
+	 * Creates a new stall detector.
+	 * @param c the calculator whose state is logged with each stall
+	 * @param thresholdMillis the time an event must take to be logged, in
+	 * milliseconds
+	 */
+	public StallDetector(Calculator c, long thresholdMillis) {
+		if (thresholdMillis <= 0)
+			throw new IllegalArgumentException(
+					"Threshold must be positive: " + thresholdMillis);
+		calc = c;
+		threshold = thresholdMillis * 1000000L;
+	}
+
+	/* METHODS */
+
+	/**
+	 * Starts watching the event dispatch thread.
+	 */
+	public void install() {
+		openLog();
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(this);
+
+		final long period = Math.max(1, threshold / 2000000L);
+		watchdog = new Thread("SuperRPN stall watchdog") {
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(period);
+						check();
+					}
+				} catch (InterruptedException ex) {
+					// uninstalled
+				}
+			}
+		};
+		watchdog.setDaemon(true);
+		watchdog.start();
+	}
+
+	/**
+	 * Stops watching the event dispatch thread.
+	 */
+	public void uninstall() {
+		if (watchdog != null) {
+			watchdog.interrupt();
+			watchdog = null;
+			pop();
+		}
+	}
+
+	/**
+	 * Sets the operator logged with stalls. Must be called on the event
+	 * dispatch thread.
+	 * @param name the name of the operator being performed, or
+	 * <code>null</code> once it is done
+	 */
+	public void setOperation(String name) {
+		operation = name;
+	}
+
+	@Override
+	protected void dispatchEvent(AWTEvent event) {
+		Dispatch outer = current;
+		Dispatch d = new Dispatch(event);
+
+		// a modal dialog runs a nested event loop, which is not a stall
+		if (outer != null)
+			outer.nested = true;
+		current = d;
+
+		try {
+			super.dispatchEvent(event);
+		} finally {
+			current = outer;
+			long elapsed = System.nanoTime() - d.start;
+			if (elapsed > threshold && !d.nested) {
+				if (d.sample != null)
+					LOG.warning("Event dispatch thread stall handling "
+							+ d.event + " ended after "
+							+ elapsed / 1000000L + " ms");
+				else
+					// finished before the watchdog got to it
+					report(d, elapsed, false);
+			}
+		}
+	}
+
+	/**
+	 * Samples the event dispatch thread and logs the stall if the current
+	 * event has taken too long. Called by the watchdog.
+	 */
+	private void check() {
+		Dispatch d = current;
+		if (d == null || d.sample != null || d.nested)
+			return;
+
+		long elapsed = System.nanoTime() - d.start;
+		if (elapsed > threshold) {
+			d.sample = d.thread.getStackTrace();
+			report(d, elapsed, true);
+		}
+	}
+
+	/**
+	 * Logs a stall. The state of the calculator is read without locking, which
+	 * is good enough for a report.
+	 * @param d the event that took too long
+	 * @param elapsed the time it has taken so far, in nanoseconds
+	 * @param ongoing <code>true</code> if the event is still being handled
+	 */
+	private void report(Dispatch d, long elapsed, boolean ongoing) {
+		ComputationStack stack = calc.getStack();
+		String nl = System.getProperty("line.separator");
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(ongoing ? "Event dispatch thread has been stalled for "
+				: "Event dispatch thread stalled for ")
+			.append(elapsed / 1000000L).append(" ms handling ")
+			.append(d.event).append(nl);
+		sb.append("  operation: ")
+			.append(operation != null ? operation : "(none)")
+			.append(", stack height: ").append(stack.height())
+			.append(", precision: ").append(stack.getPrecision())
+			.append(" digits (").append(calc.getPrecision())
+			.append(" shown)").append(nl);
+
+		if (d.sample != null) {
+			sb.append("  stack after ").append(elapsed / 1000000L)
+				.append(" ms:").append(nl);
+			for (StackTraceElement e : d.sample)
+				sb.append("    at ").append(e).append(nl);
+		}
+
+		LOG.warning(sb.toString());
+	}
+
+	/**
+	 * Adds the rolling log files to the logger, unless that has already been
+	 * done. If the files cannot be opened, stalls are only logged to the
+	 * console.
+	 */
+	private static synchronized void openLog() {
+		if (LOG.getHandlers().length > 0)
+			return;
+
+		try {
+			String pattern = System.getProperty("user.home")
+					+ File.separator + "superrpn-stall.%g.log";
+			FileHandler fh = new FileHandler(pattern,
+					Constant.STALL_LOG_SIZE, Constant.STALL_LOG_COUNT, true);
+			fh.setFormatter(new SimpleFormatter());
+			LOG.addHandler(fh);
+		} catch (IOException err) {
+			LOG.log(Level.WARNING, "Cannot open the stall log", err);
+		}
+	}
+
+	/**
+	 * An event being dispatched.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class Dispatch {
+		/** The event. */
+		private final AWTEvent event;
+		/** The thread dispatching the event. */
+		private final Thread thread;
+		/** The time the event started being dispatched. */
+		private final long start;
+		/** The stack of the dispatching thread once the event took too
+		 * long, or <code>null</code>. */
+		private volatile StackTraceElement[] sample;
+		/** Set if a nested event loop ran while dispatching the event.
+		 * Volatile because the watchdog reads it. */
+		private volatile boolean nested;
+
+		public Dispatch(AWTEvent e) {
+			event = e;
+			thread = Thread.currentThread();
+			start = System.nanoTime();
+		}
+	}
+
+}
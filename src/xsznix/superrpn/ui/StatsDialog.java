@@ -0,0 +1,170 @@
+package xsznix.superrpn.ui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import xsznix.superrpn.engine.OperationStats;
+import xsznix.superrpn.engine.ResultCache;
+import xsznix.superrpn.util.LatencyHistogram;
+
+/**
+ * A window showing the statistics of the operators performed by the
+ * calculator: how often each one ran and failed, how long it took, how much
+ * memory it allocated and how much garbage collection happened while it ran,
+ * how often results were found in the result cache, and how long it took
+ * from a key press until its result was painted.
+ * @author Xuming Zeng
+ *
+ */
+public class StatsDialog extends JDialog {
+
+	private static final long serialVersionUID = 7410367532807214695L;
+
+	/** The statistics to show. */
+	private OperationStats stats;
+
+	/** The result cache whose hit rate is shown. */
+	private ResultCache cache;
+
+	/** The rows of the table. */
+	private StatsModel model;
+
+	/** The times from key press to repaint. */
+	private LatencyHistogram latency;
+
+	/** Shows the hit rate of the result cache. */
+	private JLabel cacheLabel;
+
+	/** Shows the times from key press to repaint. */
+	private JLabel latencyLabel;
+
+	/**
+	 * Creates a new statistics window.
+	 * @param par the window that owns this one
+	 * @param s the statistics to show
+	 * @param rc the result cache whose hit rate is shown
+	 * @param lat the times from key press to repaint
+	 */
+	public StatsDialog(MainFrame par, OperationStats s, ResultCache rc,
+			LatencyHistogram lat) {
+		super(par, "Operator statistics");
+		stats = s;
+		cache = rc;
+		latency = lat;
+		model = new StatsModel();
+
+		JTable table = new JTable(model);
+		table.setAutoCreateRowSorter(true);
+		table.setFont(new Font("Courier New", Font.PLAIN, 12));
+		add(new JScrollPane(table), BorderLayout.CENTER);
+
+		// buttons
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		latencyLabel = new JLabel();
+		buttons.add(latencyLabel);
+		cacheLabel = new JLabel();
+		buttons.add(cacheLabel);
+		JButton refresh = new JButton("Refresh");
+		refresh.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+		buttons.add(refresh);
+		JButton reset = new JButton("Reset");
+		reset.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				stats.reset();
+				cache.resetCounts();
+				latency.reset();
+				refresh();
+			}
+		});
+		buttons.add(reset);
+		add(buttons, BorderLayout.SOUTH);
+
+		setSize(800, 400);
+		setLocationRelativeTo(par);
+		refresh();
+	}
+
+	/**
+	 * Reloads the statistics.
+	 */
+	public void refresh() {
+		model.setRows(stats.getSummaries());
+		cacheLabel.setText(String.format(
+				"Result cache: %d/%d, %d hits, %d misses (%.0f%%)",
+				cache.getSize(), cache.getCapacity(), cache.getHits(),
+				cache.getMisses(), cache.getHitRate() * 100.0));
+		latencyLabel.setText(String.format(
+				"Key to paint: p50 %.1f ms, p99 %.1f ms (%d keys)",
+				latency.percentile(50) / 1e6, latency.percentile(99) / 1e6,
+				latency.getCount()));
+	}
+
+	/**
+	 * A table of operator statistics.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class StatsModel extends AbstractTableModel {
+		private static final long serialVersionUID = -2630195883474581542L;
+
+		private static final String[] COLUMNS = { "Operator", "Count",
+			"Errors", "p50 (ms)", "p99 (ms)", "Max (ms)", "Bytes/op",
+			"GC (ms)" };
+
+		private List<OperationStats.Summary> rows =
+				new ArrayList<OperationStats.Summary>();
+
+		public void setRows(List<OperationStats.Summary> r) {
+			rows = r;
+			fireTableDataChanged();
+		}
+
+		public int getRowCount() { return rows.size(); }
+
+		public int getColumnCount() { return COLUMNS.length; }
+
+		@Override
+		public String getColumnName(int col) { return COLUMNS[col]; }
+
+		@Override
+		public Class<?> getColumnClass(int col) {
+			switch (col) {
+			case 0: return String.class;
+			case 3: case 4: case 5: return Double.class;
+			default: return Long.class;
+			}
+		}
+
+		public Object getValueAt(int row, int col) {
+			OperationStats.Summary s = rows.get(row);
+			switch (col) {
+			case 0: return s.getName();
+			case 1: return s.getCount();
+			case 2: return s.getErrors();
+			case 3: return s.getP50Millis();
+			case 4: return s.getP99Millis();
+			case 5: return s.getMaxMillis();
+			case 6: return s.getBytesPerOp();
+			default: return s.getGcMillis();
+			}
+		}
+	}
+
+}
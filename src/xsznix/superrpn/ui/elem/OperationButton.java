@@ -9,17 +9,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
-import javax.swing.JOptionPane;
-
-import xsznix.superrpn.compstack.ComputationStack;
-import xsznix.superrpn.err.OperationException;
 
 /**
- * A button that listen to its own actions and defines two of its own operations.
+ * A button that listen to its own actions and performs one of two operators
+ * from the calculator's operator registry.
  * @author Xuming Zeng
  *
  */
-public abstract class OperationButton extends JButton implements ActionListener {
+public class OperationButton extends JButton implements ActionListener {
 
 	private static final long serialVersionUID = 8219700390956540255L;
 	
@@ -49,6 +46,18 @@ public abstract class OperationButton extends JButton implements ActionListener
 	 */
 	private String altOp;
 	
+	/**
+	 * The name of the registered operator that this button performs, or
+	 * <code>null</code> if this button does nothing.
+	 */
+	private String opName;
+	
+	/**
+	 * The name of the registered operator that this button performs if the
+	 * Shift key is held down, or <code>null</code> if there is none.
+	 */
+	private String altOpName;
+	
 	/**
 	 * <code>true</code> if the alternate operations of the button should be
 	 * shown.
@@ -56,18 +65,30 @@ public abstract class OperationButton extends JButton implements ActionListener
 	private boolean isAlt;
 
 	/**
-	 * Performs an operation on the computation stack. This method is overridden
-	 * in any class that extends this one.
+	 * Instantiates a new <code>OperationButton</code> with a specified
+	 * parent <code>OperatorKeyboard</code>.
+	 * @param par the parent <code>OperatorKeyboard</code> of this button
+	 * @param k the letter on the keyboard corresponding to this button
+	 * @param op a short string representing the operation this button does
+	 * @param alt a short string representing the alternate operation of this
+	 * button
 	 */
-	protected abstract void operate(ComputationStack stack)
-			throws OperationException;
+	public OperationButton(OperatorKeyboard par, char k, String op, String alt) {
+		this(par, "" + k, op, alt, null, null);
+	}
 	
 	/**
-	 * Performs this button's alternate operation.
-	 * @param stack
+	 * Instantiates a new <code>OperationButton</code> with a specified
+	 * parent <code>OperatorKeyboard</code>.
+	 * @param par the parent <code>OperatorKeyboard</code> of this button
+	 * @param k the key on the keyboard corresponding to this button
+	 * @param op a short string representing the operation this button does
+	 * @param alt a short string representing the alternate operation of this
+	 * button
 	 */
-	protected abstract void altOp(ComputationStack stack)
-			throws OperationException;
+	public OperationButton(OperatorKeyboard par, String k, String op, String alt) {
+		this(par, k, op, alt, null, null);
+	}
 	
 	/**
 	 * Instantiates a new <code>OperationButton</code> with a specified
@@ -77,9 +98,12 @@ public abstract class OperationButton extends JButton implements ActionListener
 	 * @param op a short string representing the operation this button does
 	 * @param alt a short string representing the alternate operation of this
 	 * button
+	 * @param opName the name of the operator this button performs
+	 * @param altName the name of the alternate operator of this button
 	 */
-	public OperationButton(OperatorKeyboard par, char k, String op, String alt) {
-		this(par, "" + k, op, alt);
+	public OperationButton(OperatorKeyboard par, char k, String op, String alt,
+			String opName, String altName) {
+		this(par, "" + k, op, alt, opName, altName);
 	}
 	
 	/**
@@ -90,13 +114,18 @@ public abstract class OperationButton extends JButton implements ActionListener
 	 * @param op a short string representing the operation this button does
 	 * @param alt a short string representing the alternate operation of this
 	 * button
+	 * @param opName the name of the operator this button performs
+	 * @param altName the name of the alternate operator of this button
 	 */
-	public OperationButton(OperatorKeyboard par, String k, String op, String alt) {
+	public OperationButton(OperatorKeyboard par, String k, String op, String alt,
+			String opName, String altName) {
 		// set private values
 		parent = par;
 		key = k;
 		operation = op;
 		altOp = alt;
+		this.opName = opName;
+		altOpName = altName;
 		isAlt = false;
 		
 		// buttons can not be focused because the MainFrame captures all
@@ -116,37 +145,36 @@ public abstract class OperationButton extends JButton implements ActionListener
 		repaint();
 	}
 	
+	/**
+	 * Whether the alternate operation of this button is being shown.
+	 * @return <code>true</code> if the alternate operation is shown
+	 */
+	public boolean isAlt() { return isAlt; }
+	
+	/**
+	 * Performs a registered operator on the calculator. This method is
+	 * overridden by buttons that act on the keyboard rather than the stack.
+	 * @param name the name of the operator, or <code>null</code> to do nothing
+	 */
+	protected void operate(String name) {
+		if (name != null)
+			parent.getFrame().perform(name);
+	}
+	
+	/**
+	 * Performs the operation of this button right away, as a key press does.
+	 * Unlike <code>doClick()</code>, this does not hold up the event dispatch
+	 * thread to show the button being pressed.
+	 */
+	public void press() {
+		operate(isAlt ? altOpName : opName);
+	}
+	
 	/**
 	 * Handles any action performed on this button.
 	 */
 	public final void actionPerformed(ActionEvent e) {
-		ComputationStack stack = parent.getFrame().getCompStack();
-		
-		try {
-			// perform the operation
-			if (isAlt)
-				altOp(stack);
-			else
-				operate(stack);
-		} catch (Exception err) {
-			// show error to user
-			JOptionPane.showMessageDialog(parent.getFrame(),
-			    err.getMessage(),
-			    "Error",
-			    JOptionPane.ERROR_MESSAGE);
-			
-			// print error to console
-			err.printStackTrace();
-			
-			// undo stack operations
-			stack.addMarker();
-			try { stack.undo(); }
-			catch (OperationException ex) { /* lol */ }
-		}
-		
-		stack.addMarker();
-		
-		parent.getFrame().getStackView().update();
+		press();
 	}
 	
 	/**
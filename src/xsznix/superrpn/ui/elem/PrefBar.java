@@ -1,19 +1,25 @@
 package xsznix.superrpn.ui.elem;
 
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
 
 import javax.swing.Box;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
 
 import xsznix.superrpn.ui.MainFrame;
 
 /**
- * The menu bar of the MainFrame. Contains a menu to choose precision and
- * a label to display the degrees/radians mode.
+ * The menu bar of the MainFrame. Contains an edit menu, a menu to choose
+ * precision, an options menu, a statistics menu, a busy indicator and a label
+ * to display the degrees/radians mode.
  * @author Xuming Zeng
  *
  */
@@ -25,6 +31,9 @@ public class PrefBar extends JMenuBar {
 	
 	private JLabel degModeDisp;
 	
+	/** Shown while an operation is running in the background. */
+	private JProgressBar busyDisp;
+	
 	/**
 	 * Creates a new <code>PrefBar</code>.
 	 */
@@ -33,14 +42,98 @@ public class PrefBar extends JMenuBar {
 		
 		parent = par;
 		
+		// add the edit menu
+		int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+		JMenu editMenu = new JMenu("Edit");
+		JMenuItem copyItem = new JMenuItem("Copy");
+		copyItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_C,
+				shortcut));
+		copyItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.copyTop();
+			}
+		});
+		editMenu.add(copyItem);
+		JMenuItem pasteItem = new JMenuItem("Paste numbers");
+		pasteItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_V,
+				shortcut));
+		pasteItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.pasteNumbers();
+			}
+		});
+		editMenu.add(pasteItem);
+		JMenuItem importItem = new JMenuItem("Import numbers...");
+		importItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O,
+				shortcut));
+		importItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.importNumbers();
+			}
+		});
+		editMenu.add(importItem);
+		editMenu.addSeparator();
+		JMenuItem detailItem = new JMenuItem("Show full value...");
+		detailItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_D,
+				shortcut));
+		detailItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.showTopDetail();
+			}
+		});
+		editMenu.add(detailItem);
+		add(editMenu);
+		
 		// add the menu
 		JMenu precMenu = new JMenu("Precision");
 		for (int i = 1; i <= 30; i++)
 			precMenu.add(new PrecisionSetter(this, i));
 		add(precMenu);
 		
+		// add the options menu
+		JMenu optMenu = new JMenu("Options");
+		final JCheckBoxMenuItem asyncItem =
+				new JCheckBoxMenuItem("Compute in background");
+		asyncItem.setSelected(parent.isAsyncMode());
+		asyncItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.setAsyncMode(asyncItem.isSelected());
+			}
+		});
+		optMenu.add(asyncItem);
+		final JCheckBoxMenuItem fastItem =
+				new JCheckBoxMenuItem("Fast arithmetic (15 digits)");
+		fastItem.setSelected(parent.isFastMode());
+		fastItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.setFastMode(fastItem.isSelected());
+			}
+		});
+		optMenu.add(fastItem);
+		add(optMenu);
+		
+		// add the statistics menu
+		JMenu statsMenu = new JMenu("Stats");
+		JMenuItem statsItem = new JMenuItem("Operator statistics...");
+		statsItem.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				parent.showStats();
+			}
+		});
+		statsMenu.add(statsItem);
+		add(statsMenu);
+		
 		add(Box.createHorizontalGlue());
 		
+		// add the busy indicator
+		busyDisp = new JProgressBar();
+		busyDisp.setIndeterminate(true);
+		busyDisp.setToolTipText("Computing... press Esc to cancel");
+		busyDisp.setMaximumSize(busyDisp.getPreferredSize());
+		busyDisp.setVisible(false);
+		add(busyDisp);
+		add(Box.createHorizontalStrut(8));
+		
 		// add the degrees/radians mode display
 		degModeDisp = new JLabel();
 		updateDegreesModeDisplay();
@@ -66,6 +159,14 @@ public class PrefBar extends JMenuBar {
 			degModeDisp.setText("Rad");
 	}
 	
+	/**
+	 * Shows or hides the busy indicator.
+	 * @param busy <code>true</code> if an operation is running
+	 */
+	public void setBusy(boolean busy) {
+		busyDisp.setVisible(busy);
+	}
+	
 	/**
 	 * A menu item that sets the precision when clicked.
 	 * @author Xuming Zeng
@@ -0,0 +1,170 @@
+package xsznix.superrpn.ui.elem;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+
+import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.compstack.PersistentStack;
+
+/**
+ * Paints the items of a computation stack as a list of right-aligned rows,
+ * with the bottom of the stack first. Only the rows that are visible are
+ * formatted and painted, so the cost of an update or a repaint does not depend
+ * on the height of the stack, and each row only asks its item for as many
+ * characters as fit, so it does not depend on the length of the values either.
+ * @author Xuming Zeng
+ *
+ */
+public class StackList extends JComponent implements Scrollable {
+
+	private static final long serialVersionUID = -3215502945014371874L;
+
+	/** The font of the rows. */
+	private static final Font FONT = new Font("Courier New", Font.PLAIN, 14);
+
+	/** The space between the text of a row and its edges. */
+	private static final int PADDING = 2;
+
+	/** The fewest characters a row is assumed to fit. */
+	private static final int MIN_COLUMNS = 8;
+
+	/** The items to show. */
+	private PersistentStack items;
+
+	/** The number of digits to show. */
+	private int precision;
+
+	/** The height of a row, including its bottom border. */
+	private int rowHeight;
+
+	/**
+	 * Creates a new, empty stack list.
+	 */
+	public StackList() {
+		items = PersistentStack.EMPTY;
+
+		setFont(FONT);
+		setBackground(new Color(200, 200, 200));
+		setForeground(Color.BLACK);
+		setOpaque(true);
+		rowHeight = getFontMetrics(FONT).getHeight() + 2 * PADDING + 1;
+	}
+
+	// GETTERS / SETTERS
+
+	/**
+	 * Gets the height of a row.
+	 * @return the height of a row in pixels
+	 */
+	public int getRowHeight() { return rowHeight; }
+
+	/**
+	 * Sets the items to show. Only the rows from the lowest changed item up
+	 * are repainted.
+	 * @param it the items, bottom first
+	 * @param prec the number of digits to show
+	 * @param from the position of the lowest item that has changed, counting
+	 * from the bottom of the stack starting at zero
+	 */
+	public void setItems(PersistentStack it, int prec, int from) {
+		int oldHeight = items.height();
+		items = it;
+		precision = prec;
+
+		if (it.height() != oldHeight)
+			revalidate();
+
+		int to = Math.max(oldHeight, it.height());
+		if (from < to)
+			repaint(0, from * rowHeight, getWidth(), (to - from) * rowHeight);
+	}
+
+	// METHODS
+
+	@Override
+	public Dimension getPreferredSize() {
+		return new Dimension(150, items.height() * rowHeight);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		int height = items.height();
+		if (height == 0)
+			return;
+
+		// find the visible rows
+		int first = Math.max(0, clip.y / rowHeight);
+		int last = Math.min(height - 1, (clip.y + clip.height) / rowHeight);
+		if (first > last)
+			return;
+
+		g.setFont(FONT);
+		FontMetrics fm = g.getFontMetrics();
+		int width = getWidth();
+		int columns = Math.max(MIN_COLUMNS,
+				(width - 2 * PADDING) / fm.charWidth('0'));
+
+		// walk down from the last visible row
+		int row = last;
+		for (ComputationStackItem item : items.truncate(last + 1)) {
+			if (row < first)
+				break;
+
+			int y = row * rowHeight;
+			String text = item.getDisplayStr(precision, columns);
+
+			// right-align, but keep the leading digits in view if too long
+			int x = width - PADDING - fm.stringWidth(text);
+			if (x < PADDING)
+				x = PADDING;
+
+			g.setColor(getForeground());
+			g.drawString(text, x, y + PADDING + fm.getAscent());
+			g.setColor(Color.GRAY);
+			g.drawLine(0, y + rowHeight - 1, width, y + rowHeight - 1);
+
+			row--;
+		}
+	}
+
+	/* SCROLLABLE */
+
+	public Dimension getPreferredScrollableViewportSize() {
+		return new Dimension(150, 150);
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visibleRect,
+			int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ? rowHeight : 10;
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visibleRect,
+			int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ?
+				visibleRect.height : visibleRect.width;
+	}
+
+	public boolean getScrollableTracksViewportWidth() { return true; }
+
+	public boolean getScrollableTracksViewportHeight() {
+		// fill the viewport when the stack is short
+		return getParent() != null &&
+				getParent().getHeight() > getPreferredSize().height;
+	}
+
+}
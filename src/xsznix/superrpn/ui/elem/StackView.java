@@ -1,9 +1,6 @@
 package xsznix.superrpn.ui.elem;
 
-import java.awt.Color;
 import java.awt.Dimension;
-import java.util.Iterator;
-import java.util.LinkedList;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -13,34 +10,44 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 
 
-import xsznix.superrpn.compstack.ComputationStackItem;
+import xsznix.superrpn.compstack.StackListener;
+import xsznix.superrpn.compstack.StackSnapshot;
 import xsznix.superrpn.ui.MainFrame;
+import xsznix.superrpn.util.Maths;
 
 /**
  * A GUI representation of the computation stack, including the memory registers.
+ * It listens to the stack, and only redraws what has changed when it is
+ * updated.
  * @author Xuming Zeng
  *
  */
-public class StackView extends JPanel {
+public class StackView extends JPanel implements StackListener {
 
 	private static final long serialVersionUID = 1487270099691913157L;
 	
 	/** The parent <code>MainFrame</code> of this stack view */
 	private MainFrame parent;
 	
-	/** A list of labels in this stack view */
-	private LinkedList<StackViewItem> labels;
-	
 	private JScrollPane scrollPane;
 	
-	/** Contains the stack */
-	private JPanel panel;
+	/** Displays the stack */
+	private StackList list;
 	
 	/** Displays memory registers */
 	private JPanel memDisp;
 	private JLabel mem1;
 	private JLabel mem2;
 	
+	/**
+	 * The position of the lowest item that has changed since the last update.
+	 */
+	private int changedFrom;
+	
+	/** Whether the memory registers have changed since the last update. */
+	private boolean mem1Changed;
+	private boolean mem2Changed;
+	
 	/**
 	 * Creates a new stack view and updates it to fill in text from the
 	 * computation stack of the specified <code>MainFrame</code>.
@@ -48,9 +55,8 @@ public class StackView extends JPanel {
 	 */
 	public StackView(MainFrame par) {
 		parent = par;
-		labels = new LinkedList<StackViewItem>();
 		scrollPane = new JScrollPane();
-		panel = new JPanel();
+		list = new StackList();
 		memDisp = new JPanel();
 		mem1 = new JLabel();
 		mem2 = new JLabel();
@@ -58,12 +64,9 @@ public class StackView extends JPanel {
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		
 		// stack display
-		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
-		panel.setBackground(new Color(200, 200, 200));
-		panel.setMinimumSize(new Dimension(150, 150));
-		
 		scrollPane.getViewport().setMinimumSize(new Dimension(150, 150));
-		scrollPane.getViewport().add(panel);
+		scrollPane.getViewport().add(list);
+		scrollPane.getViewport().setBackground(list.getBackground());
 		
 		add(scrollPane);
 		
@@ -78,51 +81,67 @@ public class StackView extends JPanel {
 		
 		add(memDisp);
 		
+		parent.getCompStack().addStackListener(this);
+		refresh();
+	}
+	
+	/**
+	 * Redraws this stack view completely, e.g. after the display precision
+	 * has changed.
+	 */
+	public void refresh() {
+		changedFrom = 0;
+		mem1Changed = true;
+		mem2Changed = true;
 		update();
 	}
 	
 	/**
 	 * Updates this stack view to reflect the changes made to the computation
-	 * stack of the <code>MainFrame</code>
+	 * stack of the <code>MainFrame</code>. Only the visible items that have
+	 * changed are formatted, so this takes the same time however high the
+	 * stack is.
 	 */
 	public void update() {
-		// retrieve items
-		ComputationStackItem[] items = parent.getCompStack().getItems();
-		
-		// reuse labels if possible
-		int index = 0;
-		Iterator<StackViewItem> it = labels.iterator();
-		while (it.hasNext() && index < items.length) {
-			it.next().setLabel(items[index].getValStr(parent.getPrecision()));
-			index++;
-		}
+		// take a snapshot of the stack without copying it
+		StackSnapshot snapshot = parent.getCompStack().snapshot();
+		int precision = parent.getPrecision();
+		list.setItems(snapshot.getItems(), precision, changedFrom);
+		changedFrom = snapshot.height();
 		
-		// check if we need to add or delete labels
-		if (index < items.length) {
-			// make new labels
-			do {
-				StackViewItem newLabel = new StackViewItem(
-						items[index].getValStr(parent.getPrecision())); 
-				labels.add(newLabel);
-				panel.add(newLabel);
-				panel.revalidate();
-				index++;
-			} while (index < items.length);
-		} else if (labels.size() > items.length) {
-			// delete labels
-			do {
-				panel.remove(labels.removeLast());
-			} while (labels.size() > items.length);
-		}
-		
-		// memory register display
-		mem1.setText(parent.getCompStack().getMem1().toString(true));
-		mem2.setText(parent.getCompStack().getMem2().toString(true));
-		
-		repaint();
+		// memory register display, rounded like the stack
+		if (mem1Changed)
+			mem1.setText(Maths.toPrettyString(snapshot.getMem1(), precision));
+		if (mem2Changed)
+			mem2.setText(Maths.toPrettyString(snapshot.getMem2(), precision));
+		mem1Changed = false;
+		mem2Changed = false;
 		
+		// lay out the list now, so that the scroll bar knows its new height
+		scrollPane.validate();
 		JScrollBar sb = scrollPane.getVerticalScrollBar();
 		sb.setValue(sb.getMaximum());
 	}
+	
+	/* STACK LISTENER */
+	
+	public void itemPushed(int index) {
+		changedFrom = Math.min(changedFrom, index);
+	}
+	
+	public void itemsPopped(int height) {
+		changedFrom = Math.min(changedFrom, height);
+	}
+	
+	public void itemsReplaced(int index) {
+		changedFrom = Math.min(changedFrom, index);
+	}
+	
+	public void memoryChanged(int register) {
+		if (register == 1)
+			mem1Changed = true;
+		else
+			mem2Changed = true;
+	}
 
 }
@@ -9,18 +9,86 @@ package xsznix.superrpn.util;
 public interface Constant {
 
 	/**
-	 * the internal precision of stored floats
+	 * the default internal precision of stored floats
 	 */
 	public static final int PRECISION = 36;
 	
+	/**
+	 * the largest internal precision at which values may be stored and
+	 * computed as doubles
+	 */
+	public static final int DOUBLE_PRECISION = 15;
+	
+	/**
+	 * the number of precisions for which mathematical constants are cached
+	 */
+	public static final int CONSTANT_CACHE_SIZE = 8;
+	
+	/**
+	 * the number of logarithm bases whose natural logarithms are cached at
+	 * each precision
+	 */
+	public static final int LOG_CACHE_SIZE = 8;
+	
+	/**
+	 * the number of recently computed factorials that are cached
+	 */
+	public static final int FACTORIAL_CACHE_SIZE = 8;
+	
+	/**
+	 * the default number of operator results kept in the result cache of a
+	 * calculator
+	 */
+	public static final int RESULT_CACHE_SIZE = 256;
+	
+	/**
+	 * the largest number of digits of a result or operand kept in the result
+	 * cache; larger numbers, such as big factorials, are never cached
+	 */
+	public static final long RESULT_CACHE_MAX_DIGITS = 10000;
+	
+	/**
+	 * the largest number of digits of a combination or permutation; larger
+	 * results would take minutes to compute or run out of memory
+	 */
+	public static final long MAX_COMBINATORIAL_DIGITS = 10000000;
+	
 	/**
 	 * the initial displayed precision
 	 */
 	public static final int INIT_DISP_PRECISION = 30;
 	
 	/**
-	 * the initial length of the array containing the computation stack
+	 * the maximum number of operations kept in the undo history of a
+	 * computation stack
+	 */
+	public static final int UNDO_JOURNAL_LENGTH = 4096;
+	
+	/**
+	 * the default approximate number of bytes of items kept alive by the undo
+	 * history of a computation stack
+	 */
+	public static final long UNDO_JOURNAL_MAX_BYTES = 64L * 1024 * 1024;
+	
+	/**
+	 * the shortest time, in milliseconds, between two updates of the display
+	 */
+	public static final int FRAME_INTERVAL = 16;
+	
+	/**
+	 * the default time, in milliseconds, that handling a GUI event may take
+	 * before it is logged as a stall
+	 */
+	public static final long STALL_THRESHOLD = 50;
+	
+	/**
+	 * the maximum size of each stall log file, in bytes
+	 */
+	public static final int STALL_LOG_SIZE = 1024 * 1024;
+	
+	/**
+	 * the number of stall log files kept
 	 */
-	public static final int INIT_COMPSTACK_LENGTH = 10;
+	public static final int STALL_LOG_COUNT = 5;
 
 }
@@ -0,0 +1,127 @@
+package xsznix.superrpn.util;
+
+/**
+ * A histogram of durations with logarithmic buckets. Each power of two is
+ * split into <code>SUB_BUCKETS</code> buckets, so percentiles are accurate to
+ * within about 12% however long or short the durations are, and recording a
+ * duration takes constant time and no memory.<br>
+ * 
+ * Not thread safe.
+ * @author Xuming Zeng
+ * 
+ */
+public class LatencyHistogram {
+	
+	/** The number of buckets each power of two is split into, as a power of
+	 * two. */
+	private static final int SUB_BITS = 3;
+	
+	/** The number of buckets each power of two is split into. */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	
+	/** The number of durations in each bucket. */
+	private long[] counts;
+	
+	/** The number of durations recorded. */
+	private long count;
+	
+	/** The longest duration recorded. */
+	private long max;
+	
+	/**
+	 * Creates a new, empty histogram.
+	 */
+	public LatencyHistogram() {
+		counts = new long[bucketOf(Long.MAX_VALUE) + 1];
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Records a duration.
+	 * @param nanos the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts[bucketOf(nanos)]++;
+		count++;
+		if (nanos > max)
+			max = nanos;
+	}
+	
+	/**
+	 * Gets the number of durations recorded.
+	 * @return the number of durations
+	 */
+	public long getCount() { return count; }
+	
+	/**
+	 * Gets the longest duration recorded.
+	 * @return the longest duration in nanoseconds, or zero if there are none
+	 */
+	public long getMax() { return max; }
+	
+	/**
+	 * Estimates a percentile of the durations recorded.
+	 * @param p the percentile, from 0 to 100
+	 * @return the upper bound of the bucket containing the percentile, in
+	 * nanoseconds, or zero if there are no durations
+	 */
+	public long percentile(double p) {
+		if (count == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(p / 100.0 * count);
+		if (rank < 1)
+			rank = 1;
+		
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBoundOf(i), max);
+		}
+		return max;
+	}
+	
+	/**
+	 * Forgets all durations recorded.
+	 */
+	public void reset() {
+		counts = new long[counts.length];
+		count = 0;
+		max = 0;
+	}
+	
+	/**
+	 * Finds the bucket a duration belongs in.
+	 * @param v the duration, not negative
+	 * @return the index of the bucket
+	 */
+	private static int bucketOf(long v) {
+		if (v < SUB_BUCKETS)
+			return (int) v;
+		
+		// the highest bit picks the power of two, the next bits the bucket
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	/**
+	 * Finds the longest duration that belongs in a bucket.
+	 * @param i the index of the bucket
+	 * @return the upper bound of the bucket
+	 */
+	private static long upperBoundOf(int i) {
+		if (i < SUB_BUCKETS)
+			return i;
+		
+		int exp = i / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = i % SUB_BUCKETS;
+		long next = (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS);
+		return next < 0 ? Long.MAX_VALUE : next - 1;
+	}
+
+}
@@ -1,5 +1,11 @@
 package xsznix.superrpn.util;
 
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apfloat.Apfloat;
 import org.apfloat.ApfloatMath;
 import org.apfloat.Apint;
@@ -13,109 +19,828 @@ import xsznix.superrpn.err.OperationException;
  *
  */
 public class Maths {
-	/** The value of pi to the required internal precision */
-	public static final Apfloat PI = ApfloatMath.pi(Constant.PRECISION);
 	
-	/** The value of e to the required internal precision */
-	public static final Apfloat E
-			= ApfloatMath.exp(Apfloat.ONE.precision(Constant.PRECISION));
+	/**
+	 * The smallest k for which a k-combination is found from its prime
+	 * factorization.
+	 */
+	private static final long FACTOR_THRESHOLD = 64;
+	
+	/** The largest n for which combinations are found from their prime
+	 * factorization, limited by the memory the prime sieve needs. */
+	private static final Apint SIEVE_LIMIT = new Apint(1L << 28);
+	
+	/** The largest ratio n/k for which combinations are found from their
+	 * prime factorization. */
+	private static final long SIEVE_RATIO = 64;
+	
+	/** The largest number of factors in a combination or permutation whose
+	 * size is estimated. Any more, and the result is far too large anyway. */
+	private static final Apint MAX_FACTORS = new Apint(Integer.MAX_VALUE);
+	
+	/** The most digits of an integer that is still converted to a double
+	 * exactly enough to estimate the size of a combination or permutation. */
+	private static final long DOUBLE_DIGITS = 15;
+	
+	/** The largest long. */
+	private static final Apint LONG_MAX = new Apint(Long.MAX_VALUE);
+	
+	/** The largest integer whose factorial is computed exactly. Larger
+	 * factorials are computed with the gamma function. */
+	private static final Apint FACTORIAL_LIMIT = new Apint(10000);
+	
+	/** Two. */
+	private static final Apint TWO = new Apint(2);
+	
+	/** Ten. */
+	private static final Apint TEN = new Apint(10);
+	
+	/** The largest integer whose factorial fits into a double. */
+	private static final double DOUBLE_FACTORIAL_LIMIT = 170;
+	
+	/** The number of extra digits logarithms and powers are computed to. */
+	private static final long LOG_GUARD = 3;
+	
+	/** The number of extra digits the gamma function is computed to. */
+	private static final long GAMMA_GUARD = 10;
+	
+	/** The number of digits lost to cancellation per term of Spouge's
+	 * approximation of the gamma function. */
+	private static final double SPOUGE_LOSS = 0.6;
+	
+	/** One half. */
+	private static final Apfloat HALF = new Apfloat("0.5", Apfloat.INFINITE);
+	
+	/** The parameter g of the Lanczos approximation of the gamma function. */
+	private static final double LANCZOS_G = 7.0;
+	
+	/** The coefficients of the Lanczos approximation for g = 7. */
+	private static final double[] LANCZOS = {
+		0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+		771.32342877765313, -176.61502916214059, 12.507343278686905,
+		-0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7
+	};
+	
+	/**
+	 * Recently computed factorials, by argument. The least recently used
+	 * factorial is evicted when the cache is full.
+	 */
+	private static final LinkedHashMap<Long, Apint> FACTORIALS =
+			new LinkedHashMap<Long, Apint>(16, 0.75f, true) {
+		private static final long serialVersionUID = -6519853378230158093L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Apint> e) {
+			return size() > Constant.FACTORIAL_CACHE_SIZE;
+		}
+	};
+	
+	/** The number formatter of each thread. */
+	private static final ThreadLocal<NumberFormatter> FORMATTERS =
+			new ThreadLocal<NumberFormatter>() {
+		@Override
+		protected NumberFormatter initialValue() {
+			return new NumberFormatter();
+		}
+	};
+	
+	/**
+	 * Mathematical constants, by precision. The least recently used precision
+	 * is evicted when the cache is full.
+	 */
+	private static final LinkedHashMap<Long, Constants> CONSTANTS =
+			new LinkedHashMap<Long, Constants>(16, 0.75f, true) {
+		private static final long serialVersionUID = 2939419414591437618L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Constants> e) {
+			return size() > Constant.CONSTANT_CACHE_SIZE;
+		}
+	};
 	
-	/** To convert from radians to degrees */
-	public static final Apfloat R_TO_D
-			= (new Apfloat(180)).divide(PI);
+	/**
+	 * Gets the value of pi.
+	 * @param precision the number of digits required
+	 * @return pi to the required precision
+	 */
+	public static Apfloat pi(long precision) {
+		return constants(precision).pi();
+	}
 	
-	/** To convert from degrees to radians */
-	public static final Apfloat D_TO_R
-			= PI.divide(new Apfloat(180));
+	/**
+	 * Gets the value of e.
+	 * @param precision the number of digits required
+	 * @return e to the required precision
+	 */
+	public static Apfloat e(long precision) {
+		return constants(precision).e();
+	}
+	
+	/**
+	 * Finds and returns the base 10 logarithm of a number, with the natural
+	 * logarithm of 10 taken from the constant cache. A few guard digits are
+	 * carried through the division.
+	 * @param x the number, positive
+	 * @return log10(x), to the precision of <code>x</code>
+	 */
+	public static Apfloat log10(Apfloat x) {
+		long precision = precisionOf(x);
+		long wp = precision + LOG_GUARD;
+		return round(ApfloatMath.log(x.precision(wp))
+				.divide(constants(wp).ln10()), precision);
+	}
+	
+	/**
+	 * Finds and returns the logarithm of a number in an arbitrary base. The
+	 * natural logarithms of the most recently used bases are cached, so
+	 * repeated logarithms in the same base cost one logarithm instead of two.
+	 * A few guard digits are carried through the division.
+	 * @param x the number, positive
+	 * @param base the base, positive and not one
+	 * @return log(x) / log(base), to the lesser precision of the two
+	 */
+	public static Apfloat log(Apfloat x, Apfloat base) {
+		long precision = Math.min(precisionOf(x), precisionOf(base));
+		long wp = precision + LOG_GUARD;
+		return round(ApfloatMath.log(x.precision(wp))
+				.divide(constants(wp).log(base)), precision);
+	}
+	
+	/**
+	 * Finds and returns 2 raised to a power, with the natural logarithm of 2
+	 * taken from the constant cache.
+	 * @param x the exponent
+	 * @return 2^x, to the precision of <code>x</code>
+	 */
+	public static Apfloat exp2(Apfloat x) {
+		return expBase(TWO, x);
+	}
+	
+	/**
+	 * Finds and returns 10 raised to a power, with the natural logarithm of
+	 * 10 taken from the constant cache.
+	 * @param x the exponent
+	 * @return 10^x, to the precision of <code>x</code>
+	 */
+	public static Apfloat exp10(Apfloat x) {
+		return expBase(TEN, x);
+	}
+	
+	/**
+	 * Raises an integer to a power. Integer powers are multiplied out;
+	 * the others are found as e^(x ln(base)). The digits of the integer part
+	 * of x ln(base) only set the magnitude of the result, so the product is
+	 * computed with that many more digits, plus a few guard digits.
+	 * @param base the base, 2 or 10
+	 * @param x the exponent
+	 * @return base^x, to the precision of <code>x</code>
+	 */
+	private static Apfloat expBase(Apint base, Apfloat x) {
+		long precision = precisionOf(x);
+		if (isInteger(x) && ApfloatMath.abs(x).compareTo(LONG_MAX) <= 0)
+			return ApfloatMath.pow(base.precision(precision), x.longValue());
+		
+		// ln(10) < 10, so x ln(base) has at most one more integer digit
+		long wp = precision + Math.max(0, x.scale() + 1) + LOG_GUARD;
+		return round(ApfloatMath.exp(x.precision(wp).multiply(
+				constants(wp).log(base))), precision);
+	}
+	
+	/**
+	 * Rounds a number half away from zero.
+	 * @param a the number
+	 * @param precision the number of digits to round to
+	 * @return the rounded number
+	 */
+	private static Apfloat round(Apfloat a, long precision) {
+		return ApfloatMath.round(a, precision, RoundingMode.HALF_UP);
+	}
 	
 	/** Converts an angle from radians to degrees. */
 	public static Apfloat radToDeg(Apfloat rad) {
-		return rad.multiply(R_TO_D);
+		return rad.multiply(constants(precisionOf(rad)).radToDeg());
 	}
 	
 	/** Converts an angle from degrees to radians */
 	public static Apfloat degToRad(Apfloat deg) {
-		return deg.multiply(D_TO_R);
+		return deg.multiply(constants(precisionOf(deg)).degToRad());
+	}
+	
+	/**
+	 * Checks whether a double holds a usable value: finite, and either zero or
+	 * large enough not to have lost digits to underflow.
+	 * @param d the double to check
+	 * @return <code>true</code> if <code>d</code> can be used as is
+	 */
+	public static boolean fitsDouble(double d) {
+		return d == 0.0 || (Math.abs(d) >= Double.MIN_NORMAL
+				&& Math.abs(d) <= Double.MAX_VALUE);
 	}
 	
 	/**
 	 * Finds and returns a k-combination.<br>
-	 * Formula: nPr(n,k) = n(n-1)(n-2)...(n-k+1)/k(k-1)(k-2)...1
+	 * Formula: nCr(n,k) = n(n-1)(n-2)...(n-k+1)/k(k-1)(k-2)...1<br>
+	 * 
+	 * Large combinations are built from the prime factorization of the result
+	 * instead, which avoids the division. Either way, the factors are
+	 * multiplied in a balanced tree, so that the large multiplications are
+	 * done by apfloat's fast algorithms. The computation stops if the thread
+	 * is interrupted.
 	 * @param n the number of items in the set
 	 * @param k the number of items to choose
 	 * @return the k-combination
 	 * @throws OperationException when something goes wrong
 	 */
 	public static Apint nCr(Apint n, Apint k) throws OperationException {
-		Apint numerator = nPr(n, k);
+		checkCombinatorialArgs(n, k);
+		if (n.compareTo(k) < 0)
+			return Apint.ZERO;
 		
-		Apint denominator = k, i = k.subtract(Apint.ONE);
-		while (i.signum() == 1) {
-			denominator = denominator.multiply(i);
-			i = i.subtract(Apint.ONE);
-		}
+		// nCr(n,k) = nCr(n,n-k), so choose the smaller of the two
+		Apint nk = n.subtract(k);
+		if (nk.compareTo(k) < 0)
+			k = nk;
+		
+		checkResultSize(n, k, true);
+		long kl = k.longValue();
+		if (kl == 0)
+			return Apint.ONE;
 		
-		return numerator.divide(denominator);
+		// sieving up to n only pays off if n is not much larger than k
+		if (kl >= FACTOR_THRESHOLD && n.compareTo(SIEVE_LIMIT) <= 0
+				&& n.longValue() / kl <= SIEVE_RATIO)
+			return binomialByPrimes(n.longValue(), kl);
+		
+		return rangeProduct(n.subtract(k).add(Apint.ONE), kl).divide(
+				rangeProduct(Apint.ONE, kl));
 	}
 	
 	/**
 	 * Finds and returns a permutation.<br>
-	 * Formula: nCr(n,k) = n(n-1)(n-2)...(n-k+1)
+	 * Formula: nPr(n,k) = n(n-1)(n-2)...(n-k+1)<br>
+	 * 
+	 * The factors are multiplied in a balanced tree. The computation stops if
+	 * the thread is interrupted.
 	 * @param n the number of items in the set
 	 * @param k the number of items to choose and permute
 	 * @return the permutation
 	 * @throws OperationException when something goes wrong
 	 */
 	public static Apint nPr(Apint n, Apint k) throws OperationException {
-		// sanity check
-		if (n.signum() != 1 || k.signum() != 1)
-			throw new OperationException(
-				"Cannot take combination/permutation with negative numbers.");
-		if (n.compareTo(k) == 0)
-			return Apint.ONE;
-		else if (n.compareTo(k) < 0)
+		checkCombinatorialArgs(n, k);
+		if (n.compareTo(k) < 0)
 			return Apint.ZERO;
 		
-		Apint result = n, i = n.subtract(Apint.ONE);
+		checkResultSize(n, k, false);
+		return rangeProduct(n.subtract(k).add(Apint.ONE), k.longValue());
+	}
+	
+	/**
+	 * Finds and returns a factorial.<br>
+	 * Formula: n! = n(n-1)(n-2)...1<br>
+	 *
+	 * The factors are multiplied in a balanced tree, starting from the
+	 * largest recently computed factorial that is not larger than n, so that
+	 * stepping through consecutive factorials is cheap. The computation stops
+	 * if the thread is interrupted.
+	 * @param n the number to take the factorial of
+	 * @return the factorial
+	 * @throws OperationException if n is negative or the thread is
+	 * interrupted
+	 */
+	public static Apint factorial(long n) throws OperationException {
+		if (n < 0)
+			throw new OperationException(
+					"Cannot take the factorial of a negative integer.");
 		
-		// multiply
-		while (i.compareTo(k) >= 0) {
-			result = result.multiply(i);
-			i = i.subtract(Apint.ONE);
+		long from = 0;
+		Apint base = Apint.ONE;
+		synchronized (FACTORIALS) {
+			for (Map.Entry<Long, Apint> e : FACTORIALS.entrySet()) {
+				long m = e.getKey().longValue();
+				if (m <= n && m > from) {
+					from = m;
+					base = e.getValue();
+				}
+			}
+			if (from > 0)
+				FACTORIALS.get(Long.valueOf(from)); // mark as recently used
 		}
+		if (from == n)
+			return base;
 		
+		Apint result = base.multiply(
+				rangeProduct(new Apint(from + 1), n - from));
+		synchronized (FACTORIALS) {
+			FACTORIALS.put(Long.valueOf(n), result);
+		}
 		return result;
 	}
 	
 	/**
-	 * Prints an <code>Apfloat</code> in nice format.
+	 * Finds and returns the factorial of a real number, x! = gamma(x+1).
+	 * Factorials of small integers are computed exactly; the others are
+	 * computed with the gamma function.
+	 * @param x the number to take the factorial of
+	 * @return the factorial, to the precision of <code>x</code>
+	 * @throws OperationException if x is a negative integer or the thread is
+	 * interrupted
+	 */
+	public static Apfloat factorial(Apfloat x) throws OperationException {
+		long precision = precisionOf(x);
+		if (isInteger(x) && x.compareTo(FACTORIAL_LIMIT) <= 0)
+			return factorial(x.longValue()).precision(precision);
+		
+		return gamma(x.precision(precision).add(Apfloat.ONE));
+	}
+	
+	/**
+	 * Finds and returns the gamma function of a real number.<br>
+	 *
+	 * Positive integers are passed to <code>factorial()</code>. Other
+	 * arguments of at least 1/2 are computed with Spouge's approximation,
+	 * whose coefficients are cached for each precision, and the remaining
+	 * arguments with the reflection formula
+	 * gamma(x) = pi/(sin(pi x) gamma(1-x)). The number of terms of the
+	 * approximation grows linearly with the precision.
+	 * @param x the argument
+	 * @return gamma(x), to the precision of <code>x</code>
+	 * @throws OperationException if x is a pole (zero or a negative integer)
+	 * or the thread is interrupted
+	 */
+	public static Apfloat gamma(Apfloat x) throws OperationException {
+		long precision = precisionOf(x);
+		if (isInteger(x)) {
+			if (x.signum() <= 0)
+				throw new OperationException(
+						"Cannot take gamma of zero or a negative integer.");
+			if (x.compareTo(FACTORIAL_LIMIT) <= 0)
+				return factorial(x.longValue() - 1).precision(precision);
+		}
+		
+		long wp = precision + GAMMA_GUARD;
+		Apfloat wx = x.precision(wp);
+		Apfloat result;
+		if (wx.compareTo(HALF) >= 0) {
+			result = spouge(wx.subtract(Apfloat.ONE), wp);
+		} else {
+			Apfloat pi = constants(wp).pi();
+			Apfloat sin = ApfloatMath.sin(pi.multiply(wx));
+			result = pi.divide(sin.multiply(
+					spouge(wx.negate(), wp)));
+		}
+		return result.precision(precision);
+	}
+	
+	/**
+	 * Computes gamma(z+1) with Spouge's approximation,
+	 * (z+a)^(z+1/2) e^-(z+a) (c0 + c1/(z+1) + ... + c(a-1)/(z+a-1)).
+	 * @param z the argument minus one, at least -1/2
+	 * @param precision the number of digits required
+	 * @return gamma(z+1)
+	 * @throws OperationException if the thread is interrupted
+	 */
+	private static Apfloat spouge(Apfloat z, long precision)
+			throws OperationException {
+		Apfloat[] c = constants(precision).spouge();
+		long cp = c[0].precision();
+		
+		Apfloat zc = z.precision(cp);
+		Apfloat sum = c[0];
+		for (int k = 1; k < c.length; k++) {
+			sum = sum.add(c[k].divide(zc.add(new Apfloat(k))));
+			if ((k & 63) == 0)
+				checkInterrupted();
+		}
+		
+		// the exponent needs as many more digits as its integer part, which
+		// is less than (z+a) ln(z+a)
+		Apfloat za = z.add(new Apfloat(c.length));
+		long scale = za.scale();
+		long ep = precision;
+		if (scale > 0)
+			ep += scale + (long) Math.ceil(Math.log10(scale * Math.log(10)));
+		za = za.precision(ep);
+		Apfloat t = z.precision(ep).add(HALF).multiply(ApfloatMath.log(za))
+				.subtract(za);
+		
+		return ApfloatMath.exp(t).precision(precision)
+				.multiply(sum.precision(precision));
+	}
+	
+	/**
+	 * Finds and returns the factorial of a double, x! = gamma(x+1). The
+	 * factorials of integers are multiplied out.
+	 * @param x the number to take the factorial of
+	 * @return the factorial, or <code>NaN</code> if x is a negative integer
+	 */
+	public static double factorial(double x) {
+		if (x < 0.0 || x > DOUBLE_FACTORIAL_LIMIT || x != Math.floor(x))
+			return gamma(x + 1.0);
+		
+		double result = 1.0;
+		for (int i = 2; i <= (int) x; i++)
+			result *= i;
+		return result;
+	}
+	
+	/**
+	 * Finds and returns the gamma function of a double, with the Lanczos
+	 * approximation.
+	 * @param x the argument
+	 * @return gamma(x), or <code>NaN</code> if x is a pole (zero or a
+	 * negative integer)
+	 */
+	public static double gamma(double x) {
+		if (x <= 0.0 && x == Math.floor(x))
+			return Double.NaN;
+		if (x < 0.5)
+			return Math.PI / (Math.sin(Math.PI * x) * gamma(1.0 - x));
+		
+		x -= 1.0;
+		double sum = LANCZOS[0];
+		for (int i = 1; i < LANCZOS.length; i++)
+			sum += LANCZOS[i] / (x + i);
+		
+		// split the power so that it does not overflow before the
+		// exponential brings it back down
+		double t = x + LANCZOS_G + 0.5;
+		double pow = Math.pow(t, 0.5 * (x + 0.5));
+		return Math.sqrt(2.0 * Math.PI) * pow * (pow * Math.exp(-t)) * sum;
+	}
+	
+	/**
+	 * Checks the arguments of a combination or permutation.
+	 * @throws OperationException if an argument is negative
+	 */
+	private static void checkCombinatorialArgs(Apint n, Apint k)
+			throws OperationException {
+		if (n.signum() < 0 || k.signum() < 0)
+			throw new OperationException(
+				"Cannot take combination/permutation with negative numbers.");
+	}
+	
+	/**
+	 * Checks that a combination or permutation is small enough to be
+	 * computed, by estimating the number of digits of the result before any
+	 * of its factors are found.
+	 * @param n the number of items in the set
+	 * @param k the number of items to choose, at most n, and for a
+	 * combination at most n - k
+	 * @param choose <code>true</code> for a combination, <code>false</code>
+	 * for a permutation
+	 * @throws OperationException if the result would have more than
+	 * <code>Constant.MAX_COMBINATORIAL_DIGITS</code> digits
+	 */
+	private static void checkResultSize(Apint n, Apint k, boolean choose)
+			throws OperationException {
+		if (k.compareTo(MAX_FACTORS) > 0)
+			throw new OperationException(
+				"Cannot take combination/permutation: result is too large.");
+		
+		// log10 nPr(n,k) = log10 n! - log10 (n-k)!, and nCr(n,k) = nPr(n,k)/k!
+		long kl = k.longValue();
+		double digits;
+		if (n.scale() > DOUBLE_DIGITS) {
+			// n is so much larger than k that each factor has as many digits
+			digits = kl * (n.scale() - 1);
+		} else {
+			double nd = n.doubleValue();
+			digits = (logFactorial(nd) - logFactorial(nd - kl)) / Math.log(10);
+		}
+		if (choose)
+			digits -= logFactorial(kl) / Math.log(10);
+		
+		if (digits > Constant.MAX_COMBINATORIAL_DIGITS)
+			throw new OperationException(
+				"Cannot take combination/permutation: result is too large.");
+	}
+	
+	/**
+	 * Estimates the natural logarithm of a factorial with Stirling's formula.
+	 * @param x a nonnegative integer
+	 * @return approximately ln x!
+	 */
+	private static double logFactorial(double x) {
+		if (x < 1)
+			return 0;
+		return x * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI * x)
+				+ 1 / (12 * x);
+	}
+	
+	/**
+	 * Multiplies consecutive integers.
+	 * @param lo the first integer, not negative
+	 * @param count the number of integers
+	 * @return lo(lo+1)(lo+2)...(lo+count-1)
+	 * @throws OperationException if the thread is interrupted
+	 */
+	private static Apint rangeProduct(Apint lo, long count)
+			throws OperationException {
+		ArrayList<Apint> factors = new ArrayList<Apint>();
+		Apint hi = lo.add(new Apint(count));
+		
+		if (hi.compareTo(LONG_MAX) <= 0) {
+			// multiply as many factors as fit into a long before using apints
+			long acc = 1;
+			for (long i = lo.longValue(), end = hi.longValue(); i < end; i++) {
+				if (i == 0)
+					return Apint.ZERO;
+				if (acc > Long.MAX_VALUE / i) {
+					factors.add(new Apint(acc));
+					acc = 1;
+					checkInterrupted();
+				}
+				acc *= i;
+			}
+			factors.add(new Apint(acc));
+		} else {
+			for (Apint i = lo; i.compareTo(hi) < 0; i = i.add(Apint.ONE)) {
+				factors.add(i);
+				checkInterrupted();
+			}
+		}
+		
+		return product(factors);
+	}
+	
+	/**
+	 * Finds a k-combination from the prime factorization of the result. The
+	 * exponent of each prime p is the number of carries when adding k and
+	 * n-k in base p (Kummer's theorem), found with Legendre's formula.
+	 * @param n the number of items in the set
+	 * @param k the number of items to choose, at most n
+	 * @return the k-combination
+	 * @throws OperationException if the thread is interrupted
+	 */
+	private static Apint binomialByPrimes(long n, long k)
+			throws OperationException {
+		int size = (int) n + 1;
+		BitSet composite = new BitSet(size);
+		ArrayList<Apint> factors = new ArrayList<Apint>();
+		long acc = 1;
+		
+		for (int p = 2; p < size; p = composite.nextClearBit(p + 1)) {
+			// sieve
+			if ((long) p * p < size) {
+				for (int m = p * p; m < size; m += p)
+					composite.set(m);
+				checkInterrupted();
+			}
+			
+			// exponent of p in n!/(k!(n-k)!)
+			int e = 0;
+			for (long q = p; q <= n; q *= p) {
+				e += (int) (n / q - k / q - (n - k) / q);
+				if (q > n / p)
+					break;
+			}
+			
+			for (int i = 0; i < e; i++) {
+				if (acc > Long.MAX_VALUE / p) {
+					factors.add(new Apint(acc));
+					acc = 1;
+					if ((factors.size() & 1023) == 0)
+						checkInterrupted();
+				}
+				acc *= p;
+			}
+		}
+		factors.add(new Apint(acc));
+		
+		return product(factors);
+	}
+	
+	/**
+	 * Multiplies numbers in a balanced tree, so that each multiplication is
+	 * of numbers of about the same size.
+	 * @param factors the numbers to multiply; the list is overwritten
+	 * @return the product
+	 * @throws OperationException if the thread is interrupted
+	 */
+	private static Apint product(ArrayList<Apint> factors)
+			throws OperationException {
+		if (factors.isEmpty())
+			return Apint.ONE;
+		
+		int size = factors.size();
+		while (size > 1) {
+			checkInterrupted();
+			int half = 0;
+			for (int i = 0; i + 1 < size; i += 2)
+				factors.set(half++, factors.get(i).multiply(factors.get(i + 1)));
+			if ((size & 1) == 1)
+				factors.set(half++, factors.get(size - 1));
+			size = half;
+		}
+		return factors.get(0);
+	}
+	
+	/**
+	 * Stops a long computation if it has been cancelled.
+	 * @throws OperationException if the current thread has been interrupted
+	 */
+	private static void checkInterrupted() throws OperationException {
+		if (Thread.currentThread().isInterrupted())
+			throw new OperationException("The operation was cancelled.");
+	}
+	
+	/**
+	 * Checks whether a number is an integer.
+	 * @param x the number to check
+	 * @return <code>true</code> if x has no fractional part
+	 */
+	private static boolean isInteger(Apfloat x) {
+		return x.compareTo(x.truncate()) == 0;
+	}
+	
+	/**
+	 * Prints an <code>Apfloat</code> in nice format: rounded to the number of
+	 * digits, in fixed notation if it is of moderate size and in scientific
+	 * notation otherwise.
 	 * @param a the number to print
 	 * @param precision the number of digits to print to
 	 * @return the formatted string representation of the number
 	 */
 	public static String toPrettyString(Apfloat a, long precision) {
+		return toPrettyString(a, precision, NumberFormatter.Notation.AUTO);
+	}
+	
+	/**
+	 * Prints an <code>Apfloat</code> in nice format.
+	 * @param a the number to print
+	 * @param precision the number of digits to print to
+	 * @param notation the way to write the number
+	 * @return the formatted string representation of the number
+	 */
+	public static String toPrettyString(Apfloat a, long precision,
+			NumberFormatter.Notation notation) {
 		if (a == null) {
 			return "";
 		}
 		
-		long scale = a.scale();
+		return FORMATTERS.get().format(a,
+				(int) Math.min(precision, Integer.MAX_VALUE), notation);
+	}
+	
+	/**
+	 * Gets the precision to compute constants to for an operand.
+	 * @param a the operand
+	 * @return the precision of the operand, or the default precision if the
+	 * operand is exact
+	 */
+	private static long precisionOf(Apfloat a) {
+		long precision = a.precision();
+		return precision == Apfloat.INFINITE ? Constant.PRECISION : precision;
+	}
+	
+	/**
+	 * Gets the cached constants for a precision, creating them if necessary.
+	 * @param precision the number of digits required
+	 * @return the constants
+	 */
+	private static Constants constants(long precision) {
+		synchronized (CONSTANTS) {
+			Long key = Long.valueOf(precision);
+			Constants c = CONSTANTS.get(key);
+			if (c == null) {
+				c = new Constants(precision);
+				CONSTANTS.put(key, c);
+			}
+			return c;
+		}
+	}
+	
+	/**
+	 * Mathematical constants at a single precision. Each constant is computed
+	 * the first time it is needed.
+	 * @author Xuming Zeng
+	 * 
+	 */
+	private static class Constants {
+		private final long precision;
+		private Apfloat pi;
+		private Apfloat e;
+		private Apfloat radToDeg;
+		private Apfloat degToRad;
+		private Apfloat ln2;
+		private Apfloat ln10;
+		private Apfloat[] spouge;
+		
+		/** The natural logarithms of the most recently used bases. */
+		private final LinkedHashMap<Apfloat, Apfloat> logs;
 		
-		StringBuilder format = new StringBuilder().append('%');
+		public Constants(long prec) {
+			precision = prec;
+			logs = new LinkedHashMap<Apfloat, Apfloat>(16, 0.75f, true) {
+				private static final long serialVersionUID =
+						-4176528035717251846L;
+				
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Apfloat, Apfloat> e) {
+					return size() > Constant.LOG_CACHE_SIZE;
+				}
+			};
+		}
+		
+		public synchronized Apfloat pi() {
+			if (pi == null)
+				pi = ApfloatMath.pi(precision);
+			return pi;
+		}
+		
+		public synchronized Apfloat e() {
+			if (e == null)
+				e = ApfloatMath.exp(Apfloat.ONE.precision(precision));
+			return e;
+		}
+		
+		public synchronized Apfloat ln2() {
+			if (ln2 == null)
+				ln2 = ApfloatMath.log(TWO.precision(precision));
+			return ln2;
+		}
 		
-		// only use scientific notation if necessary
-		if (Math.abs(scale) < 6)
-			format = format.append("#");
+		public synchronized Apfloat ln10() {
+			if (ln10 == null)
+				ln10 = ApfloatMath.log(TEN.precision(precision));
+			return ln10;
+		}
 		
-		format = format.append('.');
+		/**
+		 * Gets the natural logarithm of a base, computing it if it is not
+		 * one of the most recently used bases.
+		 * @param base the base, positive
+		 * @return the natural logarithm of <code>base</code>
+		 */
+		public synchronized Apfloat log(Apfloat base) {
+			if (base.equals(TWO))
+				return ln2();
+			if (base.equals(TEN))
+				return ln10();
+			
+			Apfloat ln = logs.get(base);
+			if (ln == null) {
+				ln = ApfloatMath.log(base.precision(precision));
+				logs.put(base, ln);
+			}
+			return ln;
+		}
 		
-		// set precision cap
-		format = format.append(precision)
+		public synchronized Apfloat radToDeg() {
+			if (radToDeg == null)
+				radToDeg = (new Apfloat(180)).divide(pi());
+			return radToDeg;
+		}
 		
-		// finish the string
-		.append('s');
+		public synchronized Apfloat degToRad() {
+			if (degToRad == null)
+				degToRad = pi().divide(new Apfloat(180));
+			return degToRad;
+		}
 		
-		// FIXME: sometimes floating-point roundoff is not properly handled
-		return String.format(format.toString(), a);
+		/**
+		 * Gets the coefficients of Spouge's approximation of the gamma
+		 * function with enough terms for this precision,
+		 * c0 = sqrt(2 pi) and
+		 * ck = (-1)^(k-1) (a-k)^(k-1/2) e^(a-k) / (k-1)!
+		 * for k = 1 .. a-1. The terms of the approximation cancel each other
+		 * out, so the coefficients carry extra digits.
+		 * @return the coefficients c0 .. c(a-1)
+		 * @throws OperationException if the thread is interrupted
+		 */
+		public synchronized Apfloat[] spouge() throws OperationException {
+			if (spouge != null)
+				return spouge;
+			
+			// the relative error is less than (2 pi)^-(a+1/2)
+			int a = (int) Math.ceil(precision / Math.log10(2 * Math.PI)) + 1;
+			long wp = precision + (long) Math.ceil(a * SPOUGE_LOSS);
+			
+			Apfloat[] c = new Apfloat[a];
+			Apfloat twoPi = ApfloatMath.pi(wp).multiply(new Apfloat(2));
+			c[0] = ApfloatMath.sqrt(twoPi);
+			
+			// e^(a-k) and (k-1)! are updated from one term to the next
+			Apfloat e = ApfloatMath.exp(Apfloat.ONE.precision(wp));
+			Apfloat ek = ApfloatMath.pow(e, a - 1);
+			Apfloat fact = Apfloat.ONE.precision(wp);
+			for (int k = 1; k < a; k++) {
+				Apfloat ak = new Apfloat(a - k, wp);
+				Apfloat term = ApfloatMath.pow(ak, k - 1)
+						.multiply(ApfloatMath.sqrt(ak)).multiply(ek)
+						.divide(fact);
+				c[k] = (k & 1) == 1 ? term : term.negate();
+				
+				ek = ek.divide(e);
+				fact = fact.multiply(new Apfloat(k));
+				checkInterrupted();
+			}
+			
+			spouge = c;
+			return spouge;
+		}
 	}
 
 }
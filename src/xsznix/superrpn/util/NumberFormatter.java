@@ -0,0 +1,233 @@
+package xsznix.superrpn.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.RoundingMode;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+
+/**
+ * Formats floats for display. The value is rounded to the displayed number of
+ * significant digits, half away from zero, and its digits are copied out of
+ * the float into a buffer that is reused from one call to the next, then laid
+ * out in the chosen notation. Not thread safe; use one formatter per thread.
+ * @author Xuming Zeng
+ *
+ */
+public class NumberFormatter {
+	
+	/**
+	 * The ways a number can be written.
+	 * @author Xuming Zeng
+	 *
+	 */
+	public enum Notation {
+		/** Fixed notation for numbers of moderate size, scientific otherwise. */
+		AUTO,
+		/** All digits before the decimal point, e.g. 123400 or 0.0001234. */
+		FIXED,
+		/** One digit before the decimal point, e.g. 1.234e5. */
+		SCIENTIFIC,
+		/** Exponents that are multiples of three, e.g. 123.4e3. */
+		ENGINEERING
+	}
+	
+	/**
+	 * Numbers whose scale is within this limit are written in fixed notation
+	 * in <code>AUTO</code> mode.
+	 */
+	private static final long AUTO_LIMIT = 6;
+	
+	/** The characters apfloat writes the rounded number as. */
+	private final CharBuffer raw;
+	
+	/** The significant digits of the number, without trailing zeros. */
+	private char[] digits;
+	
+	/** The number of significant digits. */
+	private int count;
+	
+	/** The formatted number. */
+	private final StringBuilder out;
+	
+	/**
+	 * Creates a new formatter.
+	 */
+	public NumberFormatter() {
+		raw = new CharBuffer();
+		digits = new char[64];
+		out = new StringBuilder(64);
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Formats a number.
+	 * @param a the number to format
+	 * @param precision the number of significant digits to show
+	 * @param notation the way to write the number
+	 * @return the formatted number
+	 */
+	public String format(Apfloat a, int precision, Notation notation) {
+		if (precision <= 0)
+			throw new IllegalArgumentException(
+					"Precision must be positive: " + precision);
+		if (a.signum() == 0)
+			return "0";
+		
+		if (a.precision() > precision)
+			a = ApfloatMath.round(a, precision, RoundingMode.HALF_UP);
+		
+		// the exponent of the first digit; rounding may have changed it
+		long exp = extractDigits(a);
+		
+		out.setLength(0);
+		if (a.signum() < 0)
+			out.append('-');
+		
+		switch (notation) {
+		case FIXED:
+			appendFixed(exp);
+			break;
+		case SCIENTIFIC:
+			appendScaled(exp, exp);
+			break;
+		case ENGINEERING:
+			appendScaled(exp, exp - mod(exp, 3));
+			break;
+		default:
+			if (Math.abs(exp + 1) < AUTO_LIMIT)
+				appendFixed(exp);
+			else
+				appendScaled(exp, exp);
+		}
+		return out.toString();
+	}
+	
+	/**
+	 * Copies the significant digits of a number into <code>digits</code>.
+	 * @param a the number, not zero
+	 * @return the exponent of the first digit
+	 */
+	private long extractDigits(Apfloat a) {
+		raw.reset();
+		try {
+			a.writeTo(raw, false);
+		} catch (IOException err) {
+			// the buffer does not throw
+			throw new IllegalStateException(err);
+		}
+		
+		// apfloat writes e.g. -1.2345e-3, without trailing zeros
+		char[] chars = raw.chars;
+		int len = raw.length;
+		int i = chars[0] == '-' ? 1 : 0;
+		count = 0;
+		for (; i < len && chars[i] != 'e'; i++) {
+			if (chars[i] == '.')
+				continue;
+			if (count == digits.length) {
+				char[] bigger = new char[digits.length * 2];
+				System.arraycopy(digits, 0, bigger, 0, count);
+				digits = bigger;
+			}
+			digits[count++] = chars[i];
+		}
+		
+		long exp = 0;
+		if (i < len) {
+			boolean negative = chars[++i] == '-';
+			if (negative)
+				i++;
+			for (; i < len; i++)
+				exp = exp * 10 + (chars[i] - '0');
+			if (negative)
+				exp = -exp;
+		}
+		return exp;
+	}
+	
+	/**
+	 * Writes the digits in fixed notation.
+	 * @param exp the exponent of the first digit
+	 */
+	private void appendFixed(long exp) {
+		if (exp < 0) {
+			out.append("0.");
+			for (long z = -exp - 1; z > 0; z--)
+				out.append('0');
+			out.append(digits, 0, count);
+			return;
+		}
+		
+		// integer part, padded with zeros
+		long intDigits = exp + 1;
+		if (intDigits >= count) {
+			out.append(digits, 0, count);
+			for (long z = intDigits - count; z > 0; z--)
+				out.append('0');
+		} else {
+			out.append(digits, 0, (int) intDigits);
+			out.append('.');
+			out.append(digits, (int) intDigits, count - (int) intDigits);
+		}
+	}
+	
+	/**
+	 * Writes the digits with an exponent.
+	 * @param exp the exponent of the first digit
+	 * @param shown the exponent to write, at most <code>exp</code>
+	 */
+	private void appendScaled(long exp, long shown) {
+		int intDigits = (int) (exp - shown) + 1;
+		out.append(digits, 0, Math.min(intDigits, count));
+		for (int z = intDigits - count; z > 0; z--)
+			out.append('0');
+		if (intDigits < count) {
+			out.append('.');
+			out.append(digits, intDigits, count - intDigits);
+		}
+		if (shown != 0)
+			out.append('e').append(shown);
+	}
+	
+	/** Gets the non-negative remainder of a division. */
+	private static long mod(long a, long b) {
+		long m = a % b;
+		return m < 0 ? m + b : m;
+	}
+	
+	/**
+	 * A writer into an array that is kept from one number to the next.
+	 * @author Xuming Zeng
+	 *
+	 */
+	private static class CharBuffer extends Writer {
+		private char[] chars = new char[64];
+		private int length;
+		
+		public void reset() {
+			length = 0;
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			if (length + len > chars.length) {
+				char[] bigger = new char[Math.max(chars.length * 2,
+						length + len)];
+				System.arraycopy(chars, 0, bigger, 0, length);
+				chars = bigger;
+			}
+			System.arraycopy(cbuf, off, chars, length, len);
+			length += len;
+		}
+		
+		@Override
+		public void flush() {}
+		
+		@Override
+		public void close() {}
+	}
+
+}